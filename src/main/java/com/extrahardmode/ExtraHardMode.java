@@ -87,6 +87,9 @@ public class ExtraHardMode extends JavaPlugin
         registerModule(MsgModule.class, new MsgModule(this));
 
         registerModule(DataStoreModule.class, new DataStoreModule(this));
+        registerModule(FallingBlockRegistry.class, new FallingBlockRegistry(this));
+        registerModule(LandingPredictor.class, new LandingPredictor(this));
+        registerModule(BlockMarkStore.class, new BlockMarkStore(this));
         registerModule(BlockModule.class, new BlockModule(this));
         registerModule(UtilityModule.class, new UtilityModule(this));
         registerModule(PlayerModule.class, new PlayerModule(this));
@@ -2,8 +2,11 @@ package com.extrahardmode.command;
 
 
 import com.extrahardmode.ExtraHardMode;
+import com.extrahardmode.module.BlockModule;
+import com.extrahardmode.module.FallingBlockRegistry;
 import com.extrahardmode.service.ICommand;
 import com.extrahardmode.service.PermissionNode;
+import com.extrahardmode.task.BlockPhysicsQueue;
 import com.extrahardmode.task.RemoveExposedTorchesTask;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -29,12 +32,25 @@ public class DebugCommand implements ICommand
                     {
                         plugin.getServer().getScheduler().runTask(plugin, new RemoveExposedTorchesTask(plugin, player.getLocation().getChunk(), true));
                         sender.sendMessage(ChatColor.GREEN + plugin.getTag() + "Removed Torches and Crops in the current chunk!");
+                    } else if (args[0].equals("Physics"))
+                    {
+                        BlockPhysicsQueue queue = plugin.getModuleForClass(BlockModule.class).getPhysicsQueue();
+                        if (queue != null)
+                            sender.sendMessage(ChatColor.GREEN + plugin.getTag() + " Physics queue: " + queue.getQueueDepth() + " waiting, "
+                                    + queue.getCheckedCount() + " checked, " + queue.getMergedCount() + " merged, "
+                                    + queue.getDroppedCount() + " dropped, " + queue.getPostponedCount() + " ticks over budget");
+                        else
+                            sender.sendMessage(ChatColor.RED + plugin.getTag() + " Physics queue is not running");
+                        FallingBlockRegistry fallingBlocks = plugin.getModuleForClass(FallingBlockRegistry.class);
+                        sender.sendMessage(ChatColor.GREEN + plugin.getTag() + " Falling blocks: " + fallingBlocks.getLiveCount() + " in the air, "
+                                + fallingBlocks.getSpawnedCount() + " spawned, " + fallingBlocks.getCappedCount() + " over the limit, "
+                                + fallingBlocks.getExpiredCount() + " removed while stuck");
                     }
                     return true;
                 } else
                 {
                     sender.sendMessage(ChatColor.RED + plugin.getTag() + " You need to specify what you want to debug!");
-                    sender.sendMessage(ChatColor.RED + plugin.getTag() + " Available methods \"RemoveTorches\"");
+                    sender.sendMessage(ChatColor.RED + plugin.getTag() + " Available methods \"RemoveTorches\", \"Physics\"");
                 }
             } else
                 sender.sendMessage(ChatColor.RED + plugin.getTag() + "You need to be in game to use debugging functionality!");
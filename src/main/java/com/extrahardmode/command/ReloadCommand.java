@@ -23,15 +23,25 @@ package com.extrahardmode.command;
 
 
 import com.extrahardmode.ExtraHardMode;
+import com.extrahardmode.config.RootConfig;
+import com.extrahardmode.config.messages.MessageConfig;
+import com.extrahardmode.service.IConfigDependent;
 import com.extrahardmode.service.ICommand;
 import com.extrahardmode.service.IModule;
 import com.extrahardmode.service.PermissionNode;
+import com.extrahardmode.service.config.ConfigNode;
+import com.extrahardmode.service.config.ConfigSnapshot;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 
+import java.util.Set;
+
 /**
  * Reload command.
+ * <p/>
+ * Reloads the configs and compares the new values to the old ones. Only modules which depend on changed values get
+ * restarted, all other modules read the config when they need a value and keep their state.
  */
 public class ReloadCommand implements ICommand
 {
@@ -41,12 +51,27 @@ public class ReloadCommand implements ICommand
     {
         if (sender.hasPermission(PermissionNode.ADMIN.getNode()))
         {
+            RootConfig CFG = plugin.getModuleForClass(RootConfig.class);
+            final ConfigSnapshot before = CFG.getSnapshot();
+            CFG.closing();
+            CFG.starting();
+            final Set<ConfigNode> changed = CFG.getSnapshot().changedNodes(before);
+
+            MessageConfig messages = plugin.getModuleForClass(MessageConfig.class);
+            messages.closing();
+            messages.starting();
+
+            int restarted = 0;
             for (IModule module : plugin.getModules().values())
             {
-                module.closing();
-                module.starting();
+                if (module instanceof IConfigDependent && ((IConfigDependent) module).isAffectedBy(changed))
+                {
+                    module.closing();
+                    module.starting();
+                    restarted++;
+                }
             }
-            sender.sendMessage(ChatColor.GREEN + plugin.getTag() + " Reloaded " + plugin.getName());
+            sender.sendMessage(ChatColor.GREEN + plugin.getTag() + " Reloaded " + plugin.getName() + ": " + changed.size() + " changed options, " + restarted + " restarted modules");
         } else
         {
             sender.sendMessage(ChatColor.RED + plugin.getTag() + " Lack permission: " + PermissionNode.ADMIN.getNode());
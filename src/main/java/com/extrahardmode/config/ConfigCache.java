@@ -0,0 +1,348 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.config;
+
+
+import com.extrahardmode.service.IoHelper;
+import com.extrahardmode.service.config.ConfigNode;
+import com.extrahardmode.service.config.Mode;
+import com.extrahardmode.service.config.customtypes.BlockRelationsList;
+import com.extrahardmode.service.config.customtypes.BlockType;
+import com.extrahardmode.service.config.customtypes.BlockTypeList;
+import com.extrahardmode.service.config.customtypes.PotionEffectHolder;
+import org.bukkit.potion.PotionEffectType;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Binary cache of fully loaded and validated configs. Parsing the yml and all the block lists is slow, as long as the
+ * yml file doesn't change the values can be read straight from the cache.
+ * <p/>
+ * A cache file is only used if the md5 of the yml and the registered nodes match, otherwise the yml gets parsed as
+ * usual.
+ *
+ * @author Diemex
+ */
+public class ConfigCache
+{
+    /**
+     * Identifies our cache files
+     */
+    private static final int MAGIC = 0x45484D43; //EHMC
+
+    /**
+     * Increment when the format changes
+     */
+    private static final int FORMAT_VERSION = 1;
+
+
+    private ConfigCache()
+    {
+    }
+
+
+    /**
+     * Get the location of the cache of a config file
+     *
+     * @param cacheDir   directory the cache files are stored in
+     * @param configFile yml file
+     *
+     * @return the cache file
+     */
+    public static File getCacheFile(File cacheDir, File configFile)
+    {
+        return new File(cacheDir, configFile.getName() + ".cache");
+    }
+
+
+    /**
+     * Restore a config from the cache
+     *
+     * @param configFile yml file the cache has been created from
+     * @param cacheFile  cache file
+     * @param nodes      nodes which are registered for the config
+     *
+     * @return the fully loaded config or null if the cache is missing or outdated
+     */
+    public static EHMConfig read(File configFile, File cacheFile, ConfigNode[] nodes)
+    {
+        if (!cacheFile.exists() || !configFile.exists())
+            return null;
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != fingerprint(nodes))
+                return null;
+            byte[] hash = new byte[16];
+            in.readFully(hash);
+            if (!Arrays.equals(hash, IoHelper.md5(configFile)))
+                return null;
+
+            Mode mode = Mode.valueOf(in.readUTF());
+            List<String> worlds = readStrings(in);
+            boolean printHeader = in.readBoolean();
+            boolean printComments = in.readBoolean();
+            boolean valid = in.readBoolean();
+
+            Map<ConfigNode, Object> loadedNodes = new HashMap<ConfigNode, Object>();
+            Set<ConfigNode> foundNodes = new HashSet<ConfigNode>();
+            for (ConfigNode node : nodes)
+            {
+                if (node.getVarType() == ConfigNode.VarType.COMMENT)
+                    continue;
+                if (in.readBoolean())
+                    foundNodes.add(node);
+                loadedNodes.put(node, readValue(in, node));
+            }
+
+            EHMConfig config = new EHMConfig(null, configFile);
+            config.registerNodes(nodes);
+            config.restore(mode, worlds, printHeader, printComments, valid, loadedNodes, foundNodes);
+            return config;
+        } catch (IOException e)
+        {
+            return null;
+        } catch (IllegalArgumentException e) //Mode or PotionEffect doesn't exist anymore
+        {
+            return null;
+        } finally
+        {
+            if (in != null)
+                try
+                {
+                    in.close();
+                } catch (IOException ignored)
+                {
+                }
+        }
+    }
+
+
+    /**
+     * Write a fully loaded config to the cache
+     *
+     * @param config     loaded config
+     * @param configFile yml file the config has been loaded from
+     * @param cacheFile  file to write the cache to
+     * @param nodes      nodes which are registered for the config
+     */
+    public static void write(EHMConfig config, File configFile, File cacheFile, ConfigNode[] nodes)
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(fingerprint(nodes));
+            out.write(IoHelper.md5(configFile));
+
+            out.writeUTF(config.getMode().name());
+            writeStrings(out, config.getWorlds());
+            out.writeBoolean(config.printHeader());
+            out.writeBoolean(config.printComments());
+            out.writeBoolean(config.isValid());
+
+            for (ConfigNode node : nodes)
+            {
+                if (node.getVarType() == ConfigNode.VarType.COMMENT)
+                    continue;
+                out.writeBoolean(config.getFoundNodes().contains(node));
+                writeValue(out, node, config.getLoadedNodes().get(node));
+            }
+            out.close();
+
+            cacheFile.getParentFile().mkdirs();
+            FileOutputStream fileOut = new FileOutputStream(cacheFile);
+            try
+            {
+                bytes.writeTo(fileOut);
+            } finally
+            {
+                fileOut.close();
+            }
+        } catch (IOException e)
+        {
+            //Not critical, we will just parse the yml next time
+            cacheFile.delete();
+        }
+    }
+
+
+    /**
+     * Identifies the set of nodes, so the cache gets invalidated when nodes are added or changed by an update
+     */
+    private static int fingerprint(ConfigNode[] nodes)
+    {
+        int hash = nodes.length;
+        for (ConfigNode node : nodes)
+            hash = 31 * hash + (node.getPath() + node.getVarType()).hashCode();
+        return hash;
+    }
+
+
+    private static void writeValue(DataOutputStream out, ConfigNode node, Object value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value == null)
+            return;
+        switch (node.getVarType())
+        {
+            case BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case INTEGER:
+                out.writeInt(((Number) value).intValue());
+                break;
+            case DOUBLE:
+                out.writeDouble(((Number) value).doubleValue());
+                break;
+            case STRING:
+                out.writeUTF((String) value);
+                break;
+            case LIST:
+                writeStrings(out, (List<String>) value);
+                break;
+            case POTION_EFFECT:
+            {
+                PotionEffectHolder effect = (PotionEffectHolder) value;
+                out.writeUTF(effect.getBukkitEffectType() != null ? effect.getBukkitEffectType().getName() : "");
+                out.writeInt(effect.getDuration());
+                out.writeInt(effect.getAmplifier());
+                break;
+            }
+            case BLOCKTYPE:
+                writeBlockType(out, (BlockType) value);
+                break;
+            case BLOCKTYPE_LIST:
+            {
+                BlockType[] blocks = ((BlockTypeList) value).toArray();
+                out.writeInt(blocks.length);
+                for (BlockType block : blocks)
+                    writeBlockType(out, block);
+                break;
+            }
+            case BLOCK_RELATION_LIST:
+            {
+                Map<BlockType, BlockType> relations = ((BlockRelationsList) value).getRelations();
+                out.writeInt(relations.size());
+                for (Map.Entry<BlockType, BlockType> relation : relations.entrySet())
+                {
+                    writeBlockType(out, relation.getKey());
+                    writeBlockType(out, relation.getValue());
+                }
+                break;
+            }
+            default:
+                throw new IOException("Can't cache " + node.getVarType());
+        }
+    }
+
+
+    private static Object readValue(DataInputStream in, ConfigNode node) throws IOException
+    {
+        if (!in.readBoolean())
+            return null;
+        switch (node.getVarType())
+        {
+            case BOOLEAN:
+                return in.readBoolean();
+            case INTEGER:
+                return in.readInt();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return in.readUTF();
+            case LIST:
+                return readStrings(in);
+            case POTION_EFFECT:
+            {
+                String effectName = in.readUTF();
+                PotionEffectType type = effectName.isEmpty() ? null : PotionEffectType.getByName(effectName);
+                if (!effectName.isEmpty() && type == null)
+                    throw new IllegalArgumentException("Unknown PotionEffectType " + effectName);
+                return new PotionEffectHolder(type, in.readInt(), in.readInt());
+            }
+            case BLOCKTYPE:
+                return readBlockType(in);
+            case BLOCKTYPE_LIST:
+            {
+                int size = in.readInt();
+                BlockTypeList blocks = new BlockTypeList();
+                for (int i = 0; i < size; i++)
+                    blocks.add(readBlockType(in));
+                return blocks;
+            }
+            case BLOCK_RELATION_LIST:
+            {
+                int size = in.readInt();
+                BlockRelationsList relations = new BlockRelationsList();
+                for (int i = 0; i < size; i++)
+                    relations.add(readBlockType(in), readBlockType(in));
+                return relations;
+            }
+            default:
+                throw new IOException("Can't read " + node.getVarType() + " from cache");
+        }
+    }
+
+
+    private static void writeBlockType(DataOutputStream out, BlockType block) throws IOException
+    {
+        out.writeInt(block.getBlockId());
+        Set<Short> meta = block.getAllMeta();
+        out.writeShort(meta.size());
+        for (short data : meta)
+            out.writeShort(data);
+    }
+
+
+    private static BlockType readBlockType(DataInputStream in) throws IOException
+    {
+        int blockId = in.readInt();
+        int size = in.readShort();
+        List<Short> meta = new ArrayList<Short>(size);
+        for (int i = 0; i < size; i++)
+            meta.add(in.readShort());
+        return new BlockType(blockId, meta);
+    }
+
+
+    private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException
+    {
+        out.writeInt(strings.size());
+        for (String str : strings)
+            out.writeUTF(str);
+    }
+
+
+    private static List<String> readStrings(DataInputStream in) throws IOException
+    {
+        int size = in.readInt();
+        List<String> strings = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++)
+            strings.add(in.readUTF());
+        return strings;
+    }
+}
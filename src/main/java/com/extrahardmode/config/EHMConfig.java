@@ -33,11 +33,7 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.nio.charset.Charset;
+import java.io.*;
 import java.util.*;
 
 /**
@@ -56,6 +52,11 @@ public class EHMConfig
      */
     private Map<ConfigNode, Object> mLoadedNodes = new HashMap<ConfigNode, Object>();
 
+    /**
+     * Nodes which have actually been set in the file, everything else got filled with default values
+     */
+    private Set<ConfigNode> mFoundNodes = new HashSet<ConfigNode>();
+
     /**
      * Location we loaded the File from
      */
@@ -101,6 +102,11 @@ public class EHMConfig
      */
     private Status mStatus = Status.OK;
 
+    /**
+     * If this config has been restored from the cache, the cached result of {@link #isValid()}
+     */
+    private Boolean mCachedValid = null;
+
     /**
      * Node that holds the mode of the config (string)
      */
@@ -197,12 +203,36 @@ public class EHMConfig
      * Saves the config to file
      */
     public void save()
+    {
+        save(null);
+    }
+
+
+    /**
+     * Saves the config to file in one go, header and comments included. The file doesn't get touched if it already
+     * has the same content.
+     *
+     * @param comments comments to add to the nodes (path = key), null or empty for no comments
+     */
+    public void save(Map<String, String[]> comments)
     {
         if (mLoadedNodes.isEmpty())
             throw new IllegalStateException("No nodes are loaded, nothing to save to " + mConfigFile.getName());
-        saveNodes();
-        if (mPrintHeader)
-            writeHeader();
+        try
+        {
+            StringWriter out = new StringWriter();
+            if (mPrintHeader && mHeader != null)
+                out.write(String.format(mHeader.toString()));
+            BufferedReader yml = new BufferedReader(new StringReader(saveNodes().saveToString()));
+            if (mPrintComments && comments != null && !comments.isEmpty())
+                YamlCommentWriter.write(yml, out, new YamlCommentWriter.CommentTrie(comments));
+            else
+                YamlCommentWriter.write(yml, out, new YamlCommentWriter.CommentTrie());
+            IoHelper.writeIfChanged(mConfigFile, out.toString());
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
     }
 
 
@@ -212,6 +242,17 @@ public class EHMConfig
     }
 
 
+    /**
+     * Get the nodes which have been set in the file, as opposed to being filled in with the default values
+     *
+     * @return found nodes
+     */
+    public Set<ConfigNode> getFoundNodes()
+    {
+        return mFoundNodes;
+    }
+
+
     /**
      * Get loaded FileConfiguration
      */
@@ -520,6 +561,8 @@ public class EHMConfig
                 }
             }
             mLoadedNodes.put(node, obj);
+            if (obj != null)
+                mFoundNodes.add(node);
         }
     }
 
@@ -557,9 +600,11 @@ public class EHMConfig
 
 
     /**
-     * Writes all our validated objects back to the config in the order they were added
+     * Writes all our validated objects back to a config in the order they were added
+     *
+     * @return config containing all nodes
      */
-    private void saveNodes()
+    private FileConfiguration saveNodes()
     {
         FileConfiguration outConfig = new YamlConfiguration();
         for (ConfigNode node : mConfigNodes)
@@ -612,45 +657,7 @@ public class EHMConfig
                 }
             }
         }
-        try
-        {
-            outConfig.save(mConfigFile);
-        } catch (IOException e)
-        {
-            e.printStackTrace();
-        }
-    }
-
-
-    private void writeHeader()
-    {
-        if (mHeader == null)
-            return;
-        ByteArrayOutputStream memHeaderStream = null;
-        OutputStreamWriter memWriter = null;
-        try
-        {
-            //Write Header to a temporary file
-            memHeaderStream = new ByteArrayOutputStream();
-            memWriter = new OutputStreamWriter(memHeaderStream, Charset.forName("UTF-8").newEncoder());
-            memWriter.write(String.format(mHeader.toString()));
-            memWriter.close();
-            //Copy Header to the beginning of the config file
-            IoHelper.writeHeader(mConfigFile, memHeaderStream);
-        } catch (IOException e)
-        {
-            e.printStackTrace();
-        } finally
-        {
-            try
-            {
-                if (memHeaderStream != null) memHeaderStream.close();
-                if (memWriter != null) memWriter.close();
-            } catch (IOException e)
-            {
-                e.printStackTrace();
-            }
-        }
+        return outConfig;
     }
 
 
@@ -673,12 +680,34 @@ public class EHMConfig
      */
     public boolean isValid()
     {
+        if (mCachedValid != null)
+            return mCachedValid;
         if (mConfig == null)
             throw new IllegalStateException("FileConfiguration hasn't been loaded yet");
         return (mConfig.getValues(true).containsKey(RootNode.baseNode()) && mConfig.getStringList(RootNode.WORLDS.getPath()) != null) || isMainConfig();
     }
 
 
+    /**
+     * Restore the fully loaded state of this config without parsing the yml, used by the {@link ConfigCache}
+     */
+    void restore(Mode mode, Collection<String> worlds, boolean printHeader, boolean printComments, boolean valid,
+                 Map<ConfigNode, Object> loadedNodes, Set<ConfigNode> foundNodes)
+    {
+        mMode = mode;
+        mWorlds.clear();
+        mWorlds.addAll(worlds);
+        mEnabledForAll = mWorlds.contains(MultiWorldConfig.ALL_WORLDS);
+        mPrintHeader = printHeader;
+        mPrintComments = printComments;
+        mCachedValid = valid;
+        mLoadedNodes.clear();
+        mLoadedNodes.putAll(loadedNodes);
+        mFoundNodes.clear();
+        mFoundNodes.addAll(foundNodes);
+    }
+
+
     public void setHeader(Header header)
     {
         this.mHeader = header;
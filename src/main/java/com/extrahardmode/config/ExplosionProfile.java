@@ -0,0 +1,133 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.config;
+
+
+/**
+ * How an explosion of one {@link ExplosionType} behaves in one world. Holds the settings below and above the border y
+ * so creating an explosion doesn't have to read the config.
+ *
+ * @author Diemex
+ */
+public final class ExplosionProfile
+{
+    /**
+     * Explosions at or below this y use the below settings
+     */
+    private final int borderY;
+
+    private final int powerBelow, powerAbove;
+
+    private final boolean fireBelow, fireAbove;
+
+    private final boolean damageBelow, damageAbove;
+
+
+    ExplosionProfile(int borderY, int powerBelow, boolean fireBelow, boolean damageBelow, int powerAbove, boolean fireAbove, boolean damageAbove)
+    {
+        this.borderY = borderY;
+        this.powerBelow = powerBelow;
+        this.fireBelow = fireBelow;
+        this.damageBelow = damageBelow;
+        this.powerAbove = powerAbove;
+        this.fireAbove = fireAbove;
+        this.damageAbove = damageAbove;
+    }
+
+
+    /**
+     * Compile the profiles of all ExplosionTypes in a world
+     *
+     * @param cfg config of the world
+     *
+     * @return profiles indexed by the ordinal of the ExplosionType
+     */
+    static ExplosionProfile[] compile(WorldConfigView cfg)
+    {
+        final int borderY = cfg.getInt(RootNode.EXPLOSIONS_Y);
+        final ExplosionType[] types = ExplosionType.values();
+        final ExplosionProfile[] profiles = new ExplosionProfile[types.length];
+        for (ExplosionType type : types)
+        {
+            final RootNode[] nodes = getNodes(type);
+            if (nodes != null)
+                profiles[type.ordinal()] = new ExplosionProfile(borderY,
+                        cfg.getInt(nodes[0]), cfg.getBoolean(nodes[1]), cfg.getBoolean(nodes[2]),
+                        cfg.getInt(nodes[3]), cfg.getBoolean(nodes[4]), cfg.getBoolean(nodes[5]));
+            else //not configurable
+                profiles[type.ordinal()] = new ExplosionProfile(borderY,
+                        type.getPowerB(), type.isFireB(), type.allowBlockDmgB(),
+                        type.getPowerA(), type.isFireA(), type.allowBlockDmgA());
+        }
+        return profiles;
+    }
+
+
+    /**
+     * @return power, fire and world damage below the border followed by the same above the border, null if the type
+     * can't be configured
+     */
+    private static RootNode[] getNodes(ExplosionType type)
+    {
+        switch (type)
+        {
+            case CREEPER:
+                return new RootNode[]{RootNode.EXPLOSIONS_CREEPERS_BELOW_POWER, RootNode.EXPLOSIONS_CREEPERS_BELOW_FIRE, RootNode.EXPLOSIONS_CREEPERS_BELOW_WORLD_GRIEF,
+                        RootNode.EXPLOSIONS_CREEPERS_ABOVE_POWER, RootNode.EXPLOSIONS_CREEPERS_ABOVE_FIRE, RootNode.EXPLOSIONS_CREEPERS_ABOVE_WORLD_GRIEF};
+            case CREEPER_CHARGED:
+                return new RootNode[]{RootNode.EXPLOSIONS_CHARGED_CREEPERS_BELOW_POWER, RootNode.EXPLOSIONS_CHARGED_CREEPERS_BELOW_FIRE, RootNode.EXPLOSIONS_CHARGED_CREEPERS_BELOW_WORLD_GRIEF,
+                        RootNode.EXPLOSIONS_CHARGED_CREEPERS_ABOVE_POWER, RootNode.EXPLOSIONS_CHARGED_CREEPERS_ABOVE_FIRE, RootNode.EXPLOSIONS_CHARGED_CREEPERS_ABOVE_WORLD_GRIEF};
+            case TNT:
+                return new RootNode[]{RootNode.EXPLOSIONS_TNT_BELOW_POWER, RootNode.EXPLOSIONS_TNT_BELOW_FIRE, RootNode.EXPLOSIONS_TNT_BELOW_WORLD_GRIEF,
+                        RootNode.EXPLOSIONS_TNT_ABOVE_POWER, RootNode.EXPLOSIONS_TNT_ABOVE_FIRE, RootNode.EXPLOSIONS_TNT_ABOVE_WORLD_GRIEF};
+            case OVERWORLD_BLAZE:
+                return new RootNode[]{RootNode.EXPLOSIONS_BLAZE_BELOW_POWER, RootNode.EXPLOSIONS_BLAZE_BELOW_FIRE, RootNode.EXPLOSIONS_BLAZE_BELOW_WORLD_GRIEF,
+                        RootNode.EXPLOSIONS_BLAZE_ABOVE_POWER, RootNode.EXPLOSIONS_BLAZE_ABOVE_FIRE, RootNode.EXPLOSIONS_BLAZE_ABOVE_WORLD_GRIEF};
+            case GHAST_FIREBALL:
+                return new RootNode[]{RootNode.EXPLOSIONS_GHAST_BELOW_POWER, RootNode.EXPLOSIONS_GHAST_BELOW_FIRE, RootNode.EXPLOSIONS_GHAST_BELOW_WORLD_GRIEF,
+                        RootNode.EXPLOSIONS_GHAST_ABOVE_POWER, RootNode.EXPLOSIONS_GHAST_ABOVE_FIRE, RootNode.EXPLOSIONS_GHAST_ABOVE_WORLD_GRIEF};
+            default:
+                return null;
+        }
+    }
+
+
+    public int getPower(double y)
+    {
+        return y <= borderY ? powerBelow : powerAbove;
+    }
+
+
+    public boolean isFire(double y)
+    {
+        return y <= borderY ? fireBelow : fireAbove;
+    }
+
+
+    /**
+     * Should an explosion at this height break blocks
+     */
+    public boolean isWorldDamage(double y)
+    {
+        return y <= borderY ? damageBelow : damageAbove;
+    }
+}
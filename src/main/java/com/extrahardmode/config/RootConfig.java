@@ -24,23 +24,35 @@ package com.extrahardmode.config;
 
 import com.extrahardmode.ExtraHardMode;
 import com.extrahardmode.service.config.ConfigNode;
+import com.extrahardmode.service.config.ConfigSnapshot;
 import com.extrahardmode.service.config.Header;
+import com.extrahardmode.service.config.Mode;
 import com.extrahardmode.service.config.MultiWorldConfig;
-import com.extrahardmode.service.config.YamlCommentWriter;
+import org.bukkit.World;
 
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
 
 /**
  *
  */
 public class RootConfig extends MultiWorldConfig
 {
+    /**
+     * Views of the config per world, keyed by the uid of the world
+     */
+    private final Map<UUID, WorldConfigView> views = new ConcurrentHashMap<UUID, WorldConfigView>();
+
+    /**
+     * Writes the config files, so the main thread doesn't have to wait for the disk
+     */
+    private ExecutorService ioExecutor;
+
+
     /**
      * Constructor
      */
@@ -53,6 +65,16 @@ public class RootConfig extends MultiWorldConfig
     @Override
     public void starting()
     {
+        ioExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "ExtraHardMode config writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
         load();
     }
 
@@ -60,6 +82,20 @@ public class RootConfig extends MultiWorldConfig
     @Override
     public void closing()
     {
+        //Let pending writes finish
+        if (ioExecutor != null)
+        {
+            ioExecutor.shutdown();
+            try
+            {
+                if (!ioExecutor.awaitTermination(5, TimeUnit.SECONDS))
+                    plugin.getLogger().warning("Timed out while saving config.yml");
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            ioExecutor = null;
+        }
     }
 
 
@@ -67,21 +103,16 @@ public class RootConfig extends MultiWorldConfig
     public void load()
     {
         init();
+        views.clear();
         //find all ymls
         File[] configFiles = findAllYmlFiles(plugin.getDataFolder());
         //load the ymls
-        EHMConfig[] ehmConfigs = new EHMConfig[configFiles.length];
-        for (int i = 0; i < configFiles.length; i++)
-        {
-            ehmConfigs[i] = new EHMConfig(configFiles[i]);
-            ehmConfigs[i].registerNodes(RootNode.values());
-            ehmConfigs[i].load();
-        }
+        EHMConfig[] ehmConfigs = loadConcurrently(configFiles);
         //what is the main config.yml file?
         EHMConfig mainEhmConfig = null;
         for (EHMConfig ehmConfig : ehmConfigs)
         {
-            if (ehmConfig.isMainConfig())
+            if (ehmConfig != null && ehmConfig.isMainConfig())
             {
                 mainEhmConfig = ehmConfig;
                 break;
@@ -117,18 +148,160 @@ public class RootConfig extends MultiWorldConfig
                 set(world, node.getKey(), node.getValue());
             }
         }
+        //Apply world specific configs on top of config.yml
+        for (EHMConfig ehmConfig : ehmConfigs)
+            if (ehmConfig != null && ehmConfig != mainEhmConfig && ehmConfig.isValid())
+                applyOverrides(ehmConfig, mainEhmConfig);
+        //Flatten the loaded values for fast lookup
+        compile(RootNode.values());
         //Save files
         mainEhmConfig.setHeader(createHeader());
-        mainEhmConfig.save();
 
         //Prepare comments
-        Map<String, String[]> comments = new HashMap<String, String[]>();
+        final Map<String, String[]> comments = new HashMap<String, String[]>();
         for (RootNode node : RootNode.values())
             if (node.getComments() != null)
                 comments.put(node.getPath(), node.getComments());
 
-        if (mainEhmConfig.printComments())
-            YamlCommentWriter.write(mainEhmConfig.getConfigFile(), comments);
+        final EHMConfig toSave = mainEhmConfig;
+        Runnable saveTask = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                toSave.save(comments);
+            }
+        };
+        if (ioExecutor != null)
+            ioExecutor.execute(saveTask);
+        else //not started, f.e. in tests
+            saveTask.run();
+    }
+
+
+    /**
+     * Parse all the config files at the same time
+     *
+     * @param configFiles files to parse
+     *
+     * @return loaded configs in the same order as the files, null for files that couldn't be loaded
+     */
+    private EHMConfig[] loadConcurrently(File[] configFiles)
+    {
+        EHMConfig[] ehmConfigs = new EHMConfig[configFiles.length];
+        if (configFiles.length == 0)
+            return ehmConfigs;
+
+        final File cacheDir = new File(plugin.getDataFolder(), "persistence");
+        final int threads = Math.min(configFiles.length, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<EHMConfig>> futures = new ArrayList<Future<EHMConfig>>(configFiles.length);
+            for (final File configFile : configFiles)
+            {
+                futures.add(executor.submit(new Callable<EHMConfig>()
+                {
+                    @Override
+                    public EHMConfig call() throws Exception
+                    {
+                        //Only parse the yml if it changed since the last start
+                        File cacheFile = ConfigCache.getCacheFile(cacheDir, configFile);
+                        EHMConfig ehmConfig = ConfigCache.read(configFile, cacheFile, RootNode.values());
+                        if (ehmConfig == null)
+                        {
+                            ehmConfig = new EHMConfig(configFile);
+                            ehmConfig.registerNodes(RootNode.values());
+                            ehmConfig.load();
+                            ConfigCache.write(ehmConfig, configFile, cacheFile, RootNode.values());
+                        }
+                        return ehmConfig;
+                    }
+                }));
+            }
+            for (int i = 0; i < ehmConfigs.length; i++)
+            {
+                try
+                {
+                    ehmConfigs[i] = futures.get(i).get();
+                } catch (ExecutionException e)
+                {
+                    plugin.getLogger().log(Level.SEVERE, "Couldn't load " + configFiles[i].getName() + ", it will be ignored", e.getCause());
+                }
+            }
+        } catch (InterruptedException e)
+        {
+            plugin.getLogger().severe("Interrupted while loading the config files, only some of them have been loaded");
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            executor.shutdown();
+        }
+        return ehmConfigs;
+    }
+
+
+    /**
+     * Apply the values of a world specific config for all its worlds. Depending on the Mode nodes which aren't set in
+     * the file either inherit the value from the main config or get disabled.
+     *
+     * @param override   world specific config
+     * @param mainConfig config.yml to inherit from
+     */
+    private void applyOverrides(EHMConfig override, EHMConfig mainConfig)
+    {
+        final boolean disableMissing = override.getMode() == Mode.DISABLE;
+        for (String world : override.getWorlds())
+        {
+            if (world.equals(ALL_WORLDS))
+                continue;
+            for (Map.Entry<ConfigNode, Object> node : override.getLoadedNodes().entrySet())
+            {
+                Object value;
+                if (override.getFoundNodes().contains(node.getKey()))
+                    value = node.getValue();
+                else if (disableMissing)
+                    value = node.getKey().getValueToDisable();
+                else
+                    value = mainConfig.getLoadedNodes().get(node.getKey());
+                if (value != null)
+                    set(world, node.getKey(), value);
+            }
+        }
+    }
+
+
+    /**
+     * Get the config of a world. Meant to be obtained once per event and then used for all lookups.
+     *
+     * @param world world to get the config for
+     *
+     * @return view of the config in that world
+     */
+    public WorldConfigView getView(World world)
+    {
+        final ConfigSnapshot current = getSnapshot();
+        WorldConfigView view = views.get(world.getUID());
+        if (view == null || !view.isBackedBy(current))
+        {
+            view = new WorldConfigView(this, world.getName(), current);
+            views.put(world.getUID(), view);
+        }
+        return view;
+    }
+
+
+    /**
+     * Get the config of a world by name, prefer {@link #getView(org.bukkit.World)} which is cached
+     *
+     * @param world name of the world
+     *
+     * @return view of the config in that world
+     */
+    public WorldConfigView getView(String world)
+    {
+        return new WorldConfigView(this, world, getSnapshot());
     }
 
 
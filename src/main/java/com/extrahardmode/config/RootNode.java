@@ -808,10 +808,54 @@ public enum RootNode implements ConfigNode
      * wheter falling grass/mycel turns into dirt
      */
     MORE_FALLING_BLOCKS_TURN_TO_DIRT("Additional Falling Blocks.Turn Mycel/Grass To Dirt", VarType.BOOLEAN, true),
+    /**
+     * Move blocks to where they would land instead of spawning FallingBlocks
+     */
+    MORE_FALLING_BLOCKS_INSTANT_SETTLE("Additional Falling Blocks.Settle Instantly", VarType.BOOLEAN, false,
+            "Blocks are moved to where they would land right away instead of falling down as entities.",
+            "Saves a lot of entities when whole caves collapse, but the blocks won't visibly fall."),
     /**
      * which materials beyond sand and gravel should be subject to gravity
      */
     MORE_FALLING_BLOCKS("Additional Falling Blocks.Enabled Blocks", VarType.BLOCKTYPE_LIST, new DefaultFallingBlocks()),
+    /**
+     * How many FallingBlocks can exist at the same time
+     */
+    FALLING_BLOCKS_MAX_TOTAL("Additional Falling Blocks.Entity Limits.Max Falling Blocks", VarType.INTEGER, SubType.NATURAL_NUMBER, 500,
+            "How many falling blocks spawned by this plugin can be in the air at once.",
+            "Blocks over this limit are placed where they land or dropped right away. 0 = no limit"),
+    /**
+     * How many FallingBlocks can be spawned in one chunk
+     */
+    FALLING_BLOCKS_MAX_PER_CHUNK("Additional Falling Blocks.Entity Limits.Max Falling Blocks Per Chunk", VarType.INTEGER, SubType.NATURAL_NUMBER, 64,
+            "Same as above, but for falling blocks that started falling in the same chunk. 0 = no limit"),
+    /**
+     * When to remove FallingBlocks that are stuck
+     */
+    FALLING_BLOCKS_MAX_AGE("Additional Falling Blocks.Entity Limits.Remove Stuck Falling Blocks After Ticks", VarType.INTEGER, SubType.NATURAL_NUMBER, 400,
+            "Falling blocks that haven't landed after this many ticks are placed where they would land or dropped.",
+            "Keep this below 600, minecraft itself removes falling blocks after 600 ticks. 0 = never"),
+    /**
+     * How many blocks get checked for physics per tick
+     */
+    PHYSICS_BUDGET_BLOCKS("Additional Falling Blocks.Physics Budget.Max Blocks Checked Per Tick", VarType.INTEGER, SubType.NATURAL_NUMBER, 400,
+            "Physics checks are queued and worked off every tick, checks over this limit are postponed to the next tick. 0 = no limit"),
+    /**
+     * How much time checking physics may take per tick
+     */
+    PHYSICS_BUDGET_MILLIS("Additional Falling Blocks.Physics Budget.Max Milliseconds Per Tick", VarType.INTEGER, SubType.NATURAL_NUMBER, 5,
+            "Stop checking physics for this tick when this many milliseconds have been spent. 0 = no limit"),
+    /**
+     * How many blocks can be queued for a physics check
+     */
+    PHYSICS_QUEUE_LIMIT("Additional Falling Blocks.Physics Budget.Max Queued Blocks", VarType.INTEGER, SubType.NATURAL_NUMBER, 20000,
+            "Additional physics checks are dropped while this many blocks are waiting to be checked. 0 = no limit"),
+    /**
+     * Find blocks without support on a worker thread
+     */
+    PHYSICS_ASYNC_ANALYSIS("Additional Falling Blocks.Physics Budget.Analyze Support Off Main Thread", VarType.BOOLEAN, true,
+            "When a block is broken or placed, the surrounding chunks are copied and a worker thread finds the blocks",
+            "that lost their support. Only dropping those blocks is done on the main thread."),
 
     /**
      * ##############################
@@ -857,6 +901,28 @@ public enum RootNode implements ConfigNode
     EXPLOSIONS_FLYING_BLOCKS_AUTOREMOVE_RADIUS("Explosions.Physics.Exceed Radius Autoremove", VarType.INTEGER, SubType.NATURAL_NUMBER, 10,
             "Blocks exceeding this radius will no be placed in the world to avoid explosions uglying the landscape.",
             "Set to 0 if you want blocks to not be placed at all"),
+    /**
+     * How many blocks can start flying per tick
+     */
+    EXPLOSIONS_FLYING_BLOCKS_PER_TICK("Explosions.Physics.Max Flying Blocks Per Tick", VarType.INTEGER, SubType.NATURAL_NUMBER, 40,
+            "Flying blocks over this limit are thrown in the next ticks, blocks closest to players first.",
+            "Blocks that had to wait too long don't fly at all. 0 = no limit"),
+    /**
+     * How many blocks a single explosion can throw
+     */
+    EXPLOSIONS_FLYING_BLOCKS_PER_EXPLOSION("Explosions.Physics.Max Flying Blocks Per Explosion", VarType.INTEGER, SubType.NATURAL_NUMBER, 60,
+            "Only the blocks closest to a player fly, the others are destroyed by the explosion as usual. 0 = no limit"),
+    /**
+     * For how many ticks explosions close to each other are collected and processed together
+     */
+    EXPLOSIONS_BATCH_TICKS("Explosions.Physics.Batching.Window Ticks", VarType.INTEGER, SubType.NATURAL_NUMBER, 4,
+            "Explosions close to each other within this many ticks (tnt chains, cannons) throw blocks and cave in together.",
+            "The destroyed blocks of all of them are only processed once. Set to 0 to process every explosion on its own"),
+    /**
+     * How far apart explosions can be to be processed together
+     */
+    EXPLOSIONS_BATCH_RADIUS("Explosions.Physics.Batching.Radius", VarType.INTEGER, SubType.NATURAL_NUMBER, 8,
+            "Explosions this close to the first explosion of a batch are added to it"),
     /**
      * This determines if the explosion is categorized as under or above
      */
@@ -0,0 +1,182 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.config;
+
+
+import com.extrahardmode.service.config.ConfigNode;
+import com.extrahardmode.service.config.ConfigSnapshot;
+import com.extrahardmode.service.config.customtypes.BlockRelationsList;
+import com.extrahardmode.service.config.customtypes.BlockTypeList;
+import com.extrahardmode.service.config.customtypes.PotionEffectHolder;
+
+import java.util.List;
+
+/**
+ * The config of a single world. Obtain it once per event with {@link RootConfig#getView(org.bukkit.World)} and use
+ * it for all lookups instead of passing the world name around.
+ * <p/>
+ * A view is bound to the snapshot that was active when it was created, a reload creates new views.
+ *
+ * @author Diemex
+ */
+public class WorldConfigView
+{
+    /**
+     * Config to fall back to if there is no compiled snapshot
+     */
+    private final RootConfig config;
+
+    /**
+     * Name of the world
+     */
+    private final String worldName;
+
+    /**
+     * Snapshot this view was created from, can be null
+     */
+    private final ConfigSnapshot snapshot;
+
+    /**
+     * Compiled values of the world, null if there is no snapshot
+     */
+    private final ConfigSnapshot.WorldValues values;
+
+    /**
+     * Explosion settings indexed by the ordinal of the ExplosionType, compiled on first use
+     */
+    private ExplosionProfile[] explosionProfiles;
+
+
+    WorldConfigView(RootConfig config, String worldName, ConfigSnapshot snapshot)
+    {
+        this.config = config;
+        this.worldName = worldName;
+        this.snapshot = snapshot;
+        this.values = snapshot != null ? snapshot.forWorld(worldName) : null;
+    }
+
+
+    /**
+     * Is this view created from the given snapshot
+     */
+    boolean isBackedBy(ConfigSnapshot current)
+    {
+        return snapshot == current;
+    }
+
+
+    /**
+     * Get the name of the world this view belongs to
+     */
+    public String getWorldName()
+    {
+        return worldName;
+    }
+
+
+    /**
+     * Is ehm enabled in this world
+     */
+    public boolean isEnabled()
+    {
+        return config.isEnabledIn(worldName);
+    }
+
+
+    public boolean getBoolean(final RootNode node)
+    {
+        if (values != null && node.getVarType() == ConfigNode.VarType.BOOLEAN)
+            return values.getBoolean(node.ordinal());
+        return config.getBoolean(node, worldName);
+    }
+
+
+    public int getInt(final RootNode node)
+    {
+        if (values != null && node.getVarType() == ConfigNode.VarType.INTEGER)
+            return values.getInt(node.ordinal());
+        return config.getInt(node, worldName);
+    }
+
+
+    public double getDouble(final RootNode node)
+    {
+        if (values != null && node.getVarType() == ConfigNode.VarType.DOUBLE)
+            return values.getDouble(node.ordinal());
+        return config.getDouble(node, worldName);
+    }
+
+
+    public String getString(final RootNode node)
+    {
+        if (values != null && node.getVarType() == ConfigNode.VarType.STRING)
+            return values.getString(node.ordinal());
+        return config.getString(node, worldName);
+    }
+
+
+    public List getStringList(final RootNode node)
+    {
+        if (values != null && node.getVarType() == ConfigNode.VarType.LIST)
+            return values.getStringList(node.ordinal());
+        return config.getStringList(node, worldName);
+    }
+
+
+    public PotionEffectHolder getPotionEffect(final RootNode node)
+    {
+        if (values != null && node.getVarType() == ConfigNode.VarType.POTION_EFFECT)
+            return values.getPotionEffect(node.ordinal());
+        return config.getPotionEffect(node, worldName);
+    }
+
+
+    public BlockTypeList getBlocktypeList(final RootNode node)
+    {
+        if (values != null && node.getVarType() == ConfigNode.VarType.BLOCKTYPE_LIST)
+            return values.getBlocktypeList(node.ordinal());
+        return config.getBlocktypeList(node, worldName);
+    }
+
+
+    public BlockRelationsList getBlockRelationList(final RootNode node)
+    {
+        if (values != null && node.getVarType() == ConfigNode.VarType.BLOCK_RELATION_LIST)
+            return values.getBlockRelationList(node.ordinal());
+        return config.getBlockRelationList(node, worldName);
+    }
+
+
+    /**
+     * Get the settings of an explosion type in this world
+     */
+    public ExplosionProfile getExplosionProfile(final ExplosionType type)
+    {
+        ExplosionProfile[] profiles = explosionProfiles;
+        if (profiles == null)
+        {
+            profiles = ExplosionProfile.compile(this);
+            explosionProfiles = profiles;
+        }
+        return profiles[type.ordinal()];
+    }
+}
@@ -35,6 +35,8 @@ import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 
 /** Configuration handler for the messages.yml file. */
@@ -46,6 +48,18 @@ public class MessageConfig extends ModularConfig
     /** Configuration object reference. */
     private final YamlConfiguration config;
 
+    /** Messages with translated color codes, indexed by the ordinal of the MessageNode. Null for non string nodes. */
+    private volatile String[] messages;
+
+    /** Resolved category of every MessageNode, indexed by ordinal. */
+    private volatile MsgCategory[] categories;
+
+    /** How often a message should be displayed, indexed by ordinal. */
+    private volatile int[] msgCounts;
+
+    /** Marks a message count for a category without one. */
+    private static final int NO_COUNT = Integer.MIN_VALUE;
+
 
     /**
      * Constructor.
@@ -73,6 +87,10 @@ public class MessageConfig extends ModularConfig
     public void closing()
     {
         OPTIONS.clear();
+        clearCompiled();
+        messages = null;
+        categories = null;
+        msgCounts = null;
         //reload();
         //save();
     }
@@ -185,6 +203,7 @@ public class MessageConfig extends ModularConfig
             config.load(file);
             loadSettings(config);
             boundsCheck();
+            compileMessages();
         } catch (FileNotFoundException e)
         {
             plugin.getLogger().log(Level.SEVERE, "File messages.yml not found.", e);
@@ -224,9 +243,50 @@ public class MessageConfig extends ModularConfig
     }
 
 
+    /**
+     * Resolve categories, message counts and color codes of all messages once, so sending a message only has to index
+     * into arrays.
+     */
+    private void compileMessages()
+    {
+        final MessageNode[] nodes = MessageNode.values();
+        compile(nodes);
+
+        Map<String, MessageNode> modeNodes = new HashMap<String, MessageNode>();
+        for (MessageNode node : nodes)
+            if (node.name().endsWith("_MODE"))
+                modeNodes.put(node.name().substring(0, node.name().length() - "_MODE".length()), node);
+
+        String[] compiledMessages = new String[nodes.length];
+        MsgCategory[] compiledCategories = new MsgCategory[nodes.length];
+        int[] compiledCounts = new int[nodes.length];
+        for (MessageNode node : nodes)
+        {
+            final int index = node.ordinal();
+            if (node.getVarType() == ConfigNode.VarType.STRING)
+                compiledMessages[index] = ChatColor.translateAlternateColorCodes('&', super.getString(node));
+
+            MessageNode modeNode = node.name().endsWith("_MODE") ? node : modeNodes.get(node.name());
+            Object obj = modeNode != null ? OPTIONS.get(modeNode) : null;
+            compiledCategories[index] = obj instanceof MsgCategory ? (MsgCategory) obj : null;
+            compiledCounts[index] = countFor(compiledCategories[index]);
+        }
+        messages = compiledMessages;
+        categories = compiledCategories;
+        msgCounts = compiledCounts;
+    }
+
+
     @Override
     public String getString(ConfigNode node)
     {
+        final String[] compiled = messages;
+        if (compiled != null && node instanceof MessageNode)
+        {
+            String message = compiled[((MessageNode) node).ordinal()];
+            if (message != null)
+                return message;
+        }
         return ChatColor.translateAlternateColorCodes('&', super.getString(node));
     }
 
@@ -258,6 +318,10 @@ public class MessageConfig extends ModularConfig
      */
     public MsgCategory getCat(MessageNode node)
     {
+        final MsgCategory[] compiled = categories;
+        if (compiled != null)
+            return compiled[node.ordinal()];
+
         MessageNode modeNode = null;
         Object obj = null;
         try
@@ -283,7 +347,22 @@ public class MessageConfig extends ModularConfig
      */
     public int getMsgCount(MessageNode node)
     {
-        switch (getCat(node))
+        final int[] compiled = msgCounts;
+        final int count = compiled != null ? compiled[node.ordinal()] : countFor(getCat(node));
+        if (count == NO_COUNT)
+            throw new UnsupportedOperationException("Not Implemented MsgCategory");
+        return count;
+    }
+
+
+    /**
+     * @return how often a message of this category is displayed, -1 = no limit, NO_COUNT if the category has no count
+     */
+    private static int countFor(MsgCategory cat)
+    {
+        if (cat == null)
+            return NO_COUNT;
+        switch (cat)
         {
             case TUTORIAL:
                 return 3;
@@ -294,7 +373,7 @@ public class MessageConfig extends ModularConfig
             case ONE_TIME:
                 return 1;
             default:
-                throw new UnsupportedOperationException("Not Implemented MsgCategory");
+                return NO_COUNT;
         }
     }
 
@@ -1,20 +1,74 @@
 package com.extrahardmode.events.fakeevents;
 
 
+import com.extrahardmode.module.ExplosionCompatStorage;
+import com.extrahardmode.module.ExplosionSource;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
 import org.bukkit.event.entity.EntityExplodeEvent;
 
 import java.util.List;
 
 /**
+ * Called with the actual cause of one of our explosions.
+ * <p/>
+ * If the explosion has a virtual source no entity exists for it, the entity type is that of the source. An entity is
+ * only obtained if a listener asks for it.
+ *
  * @author Diemex
  */
 public class FakeEntityExplodeEvent extends EntityExplodeEvent
 {
+    private final ExplosionSource source;
+
+    /**
+     * Provides an entity for virtual sources, null if the source isn't virtual
+     */
+    private final ExplosionCompatStorage storage;
+
+
     public FakeEntityExplodeEvent(Entity what, Location location, List<Block> blocks, float yield)
     {
         super(what, location, blocks, yield);
+        this.source = ExplosionSource.of(what);
+        this.storage = null;
+    }
+
+
+    public FakeEntityExplodeEvent(ExplosionSource source, ExplosionCompatStorage storage, Location location, List<Block> blocks, float yield)
+    {
+        super(source.getRealEntity(), location, blocks, yield);
+        this.source = source;
+        this.storage = storage;
+    }
+
+
+    /**
+     * Get the entity that caused the explosion. For virtual sources this is a hidden entity of the right type.
+     */
+    @Override
+    public Entity getEntity()
+    {
+        if (entity == null && source != null && storage != null)
+            entity = storage.getEntity(source);
+        return entity;
+    }
+
+
+    @Override
+    public EntityType getEntityType()
+    {
+        return source != null ? source.getType() : super.getEntityType();
+    }
+
+
+    /**
+     * Get what caused the explosion without creating an entity
+     */
+    public ExplosionSource getSource()
+    {
+        return source;
     }
 }
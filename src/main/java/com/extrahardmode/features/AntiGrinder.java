@@ -60,7 +60,7 @@ public class AntiGrinder extends ListenerModule
      */
     public AntiGrinder(ExtraHardMode plugin, RootConfig CFG, BlockModule blockModule)
     {
-        super(plugin);
+        super(plugin, RootNode.INHIBIT_MONSTER_GRINDERS);
         this.CFG = CFG;
         this.blockModule = blockModule;
     }
@@ -69,7 +69,7 @@ public class AntiGrinder extends ListenerModule
     /** Your basic constructor of choice */
     public AntiGrinder(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.INHIBIT_MONSTER_GRINDERS);
     }
 
 
@@ -26,12 +26,18 @@ import com.extrahardmode.ExtraHardMode;
 import com.extrahardmode.config.ExplosionType;
 import com.extrahardmode.config.RootConfig;
 import com.extrahardmode.config.RootNode;
+import com.extrahardmode.config.WorldConfigView;
 import com.extrahardmode.events.fakeevents.FakeEntityExplodeEvent;
 import com.extrahardmode.module.BlockModule;
 import com.extrahardmode.module.ExplosionCompatStorage;
+import com.extrahardmode.module.FallingBlockRegistry;
 import com.extrahardmode.module.UtilityModule;
+import com.extrahardmode.service.HandlerGate;
 import com.extrahardmode.service.ListenerModule;
+import com.extrahardmode.task.CollapseSolver;
 import com.extrahardmode.task.CreateExplosionTask;
+import com.extrahardmode.task.DebrisScheduler;
+import com.extrahardmode.task.ExplosionBatch;
 import org.apache.commons.lang.Validate;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -54,10 +60,22 @@ public class Explosions extends ListenerModule
 {
     private RootConfig CFG;
 
-    private BlockModule blockModule;
+    private FallingBlockRegistry fallingBlocks;
 
     private final String tag = "extrahardmode.explosion.fallingblock";
 
+    /**
+     * Explosions collected to be processed together
+     */
+    private final List<ExplosionBatch> openBatches = new ArrayList<ExplosionBatch>();
+
+    /**
+     * Launches the blocks thrown by explosions
+     */
+    private DebrisScheduler debrisScheduler;
+
+    private int debrisTaskId = -1;
+
 
     //     ___ ___  _  _ ___ _____ ___ _   _  ___ _____ ___  ___
     //    / __/ _ \| \| / __|_   _| _ \ | | |/ __|_   _/ _ \| _ \
@@ -80,7 +98,22 @@ public class Explosions extends ListenerModule
     {
         super.starting();
         CFG = plugin.getModuleForClass(RootConfig.class);
-        blockModule = plugin.getModuleForClass(BlockModule.class);
+        fallingBlocks = plugin.getModuleForClass(FallingBlockRegistry.class);
+        debrisScheduler = new DebrisScheduler(this, CFG);
+        debrisTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, debrisScheduler, 1L, 1L);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        openBatches.clear();
+        if (debrisTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(debrisTaskId);
+        debrisTaskId = -1;
+        if (debrisScheduler != null)
+            debrisScheduler.clear();
     }
 
 
@@ -93,6 +126,7 @@ public class Explosions extends ListenerModule
     //   |   / _| (_ | |_| | |__ / _ \|   / | |__ | |\__ \ | | | _|| .` | _||   /
     //   |_|_\___\___|\___/|____/_/ \_\_|_\ |____|___|___/ |_| |___|_|\_|___|_|_\
     //
+    @HandlerGate({RootNode.EXPLOSIONS_GHASTS_ENABLE, RootNode.EXPLOSIONS_TNT_ENABLE})
     @EventHandler(ignoreCancelled = true, priority = EventPriority.LOWEST)
     public void regularExplosions(EntityExplodeEvent event)
     {
@@ -102,14 +136,13 @@ public class Explosions extends ListenerModule
         final Entity sourceEntity = event.getEntity();
         final World world = event.getLocation().getWorld();
         final Location location = sourceEntity.getLocation();
+        final WorldConfigView worldCfg = CFG.getView(world);
 
-        final boolean customGhastExplosion = CFG.getBoolean(RootNode.EXPLOSIONS_GHASTS_ENABLE, world.getName());
-        final boolean customTntExplosion = CFG.getBoolean(RootNode.EXPLOSIONS_TNT_ENABLE, world.getName());
-        final boolean multipleExplosions = CFG.getBoolean(RootNode.BETTER_TNT, world.getName());
+        final boolean customGhastExplosion = worldCfg.getBoolean(RootNode.EXPLOSIONS_GHASTS_ENABLE);
+        final boolean customTntExplosion = worldCfg.getBoolean(RootNode.EXPLOSIONS_TNT_ENABLE);
+        final boolean multipleExplosions = worldCfg.getBoolean(RootNode.BETTER_TNT);
         //cancel explosion if no worldDamage should be done
-        final boolean tntWorldDamage = event.getLocation().getBlockY() > CFG.getInt(RootNode.EXPLOSIONS_Y, world.getName())
-                ? CFG.getBoolean(RootNode.EXPLOSIONS_TNT_ABOVE_WORLD_GRIEF, world.getName())
-                : CFG.getBoolean(RootNode.EXPLOSIONS_TNT_BELOW_WORLD_GRIEF, world.getName());
+        final boolean tntWorldDamage = worldCfg.getExplosionProfile(ExplosionType.TNT).isWorldDamage(event.getLocation().getBlockY());
 
         // TNT
         if (sourceEntity instanceof TNTPrimed)
@@ -125,7 +158,7 @@ public class Explosions extends ListenerModule
                     multipleExplosions(location, sourceEntity, ExplosionType.TNT);
                 }
 
-                if (!tntWorldDamage && CFG.isEnabledIn(world.getName()))
+                if (!tntWorldDamage && worldCfg.isEnabled())
                     event.setCancelled(true);
             }
         }
@@ -152,6 +185,7 @@ public class Explosions extends ListenerModule
      *
      * @param event event that occurred
      */
+    @HandlerGate(RootNode.EXPLOSIONS_FYLING_BLOCKS_ENABLE)
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST) //so it probably got cancelled already
     public void onLateExplosion(EntityExplodeEvent event)
     {
@@ -160,28 +194,90 @@ public class Explosions extends ListenerModule
 
         final Entity sourceEntity = event.getEntity();
         final World world = event.getLocation().getWorld();
-        final String worldName = world.getName();
+        final WorldConfigView worldCfg = CFG.getView(world);
         final Location location = event.getLocation();
         final Collection<Block> blocks = event.blockList();
 
-        final boolean flyingBlocks = CFG.getBoolean(RootNode.EXPLOSIONS_FYLING_BLOCKS_ENABLE, world.getName());
+        final boolean flyingBlocks = worldCfg.getBoolean(RootNode.EXPLOSIONS_FYLING_BLOCKS_ENABLE);
 
-        final boolean flyOtherPlugins = CFG.getBoolean(RootNode.EXPLOSIONS_FYLING_BLOCKS_ENABLE_OTHER, worldName);
-        final int flyPercentage = CFG.getInt(RootNode.EXPLOSIONS_FLYING_BLOCKS_PERCENTAGE, worldName);
-        final double upVel = CFG.getDouble(RootNode.EXPLOSIONS_FLYING_BLOCKS_UP_VEL, worldName);
-        final double spreadVel = CFG.getDouble(RootNode.EXPLOSIONS_FLYING_BLOCKS_SPREAD_VEL, worldName);
+        final boolean flyOtherPlugins = worldCfg.getBoolean(RootNode.EXPLOSIONS_FYLING_BLOCKS_ENABLE_OTHER);
+        final int flyPercentage = worldCfg.getInt(RootNode.EXPLOSIONS_FLYING_BLOCKS_PERCENTAGE);
+        final double upVel = worldCfg.getDouble(RootNode.EXPLOSIONS_FLYING_BLOCKS_UP_VEL);
+        final double spreadVel = worldCfg.getDouble(RootNode.EXPLOSIONS_FLYING_BLOCKS_SPREAD_VEL);
 
         // PHYSICS
         if (flyingBlocks && (flyOtherPlugins || sourceEntity != null))
         {
-            applyExplosionPhysics(blocks, location, flyPercentage, upVel, spreadVel);
-
-            if (CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_ENABLE, worldName))
+            final int batchTicks = worldCfg.getInt(RootNode.EXPLOSIONS_BATCH_TICKS);
+            if (batchTicks > 0)
             {
-                blockModule.physicsCheck(location.add(0, 5, 0).getBlock(), 5, true, 3); //loosen ceiling
-                blockModule.physicsCheck(location.add(0, -3, 0).getBlock(), 5, true, 6); //ground loosen
+                //process explosions close to each other together
+                ExplosionBatch batch = findBatch(location);
+                if (batch == null)
+                {
+                    batch = new ExplosionBatch(plugin, location, worldCfg.getInt(RootNode.EXPLOSIONS_BATCH_RADIUS));
+                    openBatches.add(batch);
+                    plugin.getServer().getScheduler().runTaskLater(plugin, batch, batchTicks);
+                }
+                batch.add(location, blocks);
+                return;
             }
+
+            applyExplosionPhysics(blocks, location, flyPercentage, upVel, spreadVel);
+
+            //let the walls and ceiling of the crater cave in once the blocks are gone
+            if (worldCfg.getBoolean(RootNode.MORE_FALLING_BLOCKS_ENABLE) && !blocks.isEmpty())
+                plugin.getServer().getScheduler().runTaskLater(plugin, new CollapseSolver(plugin, world, blocks), 3L);
+        }
+    }
+
+
+    /**
+     * Get the open batch an explosion at this location belongs to
+     *
+     * @return the batch or null if there is none close enough
+     */
+    private ExplosionBatch findBatch(Location location)
+    {
+        for (ExplosionBatch batch : openBatches)
+            if (batch.isInRange(location))
+                return batch;
+        return null;
+    }
+
+
+    /**
+     * Throw the blocks of all explosions in the batch and let the crater cave in, the blocks have been destroyed by
+     * now
+     *
+     * @param batch batch that closed
+     */
+    public void processBatch(ExplosionBatch batch)
+    {
+        openBatches.remove(batch);
+        final World world = batch.getWorld();
+        final WorldConfigView worldCfg = CFG.getView(world);
+        final int flyPercentage = worldCfg.getInt(RootNode.EXPLOSIONS_FLYING_BLOCKS_PERCENTAGE);
+        final double upVel = worldCfg.getDouble(RootNode.EXPLOSIONS_FLYING_BLOCKS_UP_VEL);
+        final double spreadVel = worldCfg.getDouble(RootNode.EXPLOSIONS_FLYING_BLOCKS_SPREAD_VEL);
+
+        final List<Location> centers = batch.getCenters();
+        final List<List<DebrisScheduler.Debris>> debris = new ArrayList<List<DebrisScheduler.Debris>>(centers.size());
+        for (int i = 0; i < centers.size(); i++)
+            debris.add(new ArrayList<DebrisScheduler.Debris>());
+        for (int[] block : batch.getDestroyed())
+        {
+            final Material type = Material.getMaterial(block[3]);
+            //Only a few of the blocks fly as an effect
+            if (type != null && type.isSolid() && plugin.random(flyPercentage))
+                debris.get(block[5]).add(new DebrisScheduler.Debris(new Location(world, block[0], block[1], block[2]), type, (byte) block[4]));
         }
+        for (int i = 0; i < centers.size(); i++)
+            debrisScheduler.submit(centers.get(i), debris.get(i), upVel, spreadVel);
+
+        //let the walls and ceiling of the crater cave in
+        if (worldCfg.getBoolean(RootNode.MORE_FALLING_BLOCKS_ENABLE) && !batch.getDestroyed().isEmpty())
+            new CollapseSolver(plugin, world, batch.getDestroyed().toArray(new int[batch.getDestroyed().size()][])).run();
     }
 
 
@@ -213,42 +309,36 @@ public class Explosions extends ListenerModule
         if (event.getEntity() == null)
         {
             ExplosionCompatStorage explosionStorage = plugin.getModuleForClass(ExplosionCompatStorage.class);
-            if (!explosionStorage.queueEmpty())
+            //Just make sure that this explosion is in fact from us
+            ExplosionCompatStorage.QueuedExplosion explosion = explosionStorage.takeExplosion(event.getLocation());
+            if (explosion != null)
             {
-                //Just make sure that this explosion is in fact from us
-                Location savedLoc = explosionStorage.getCenterLocation();
-                Location eventLoc = event.getLocation();
-                if (savedLoc.getBlockX() == eventLoc.getBlockX() && savedLoc.getBlockY() == eventLoc.getBlockY() && savedLoc.getBlockZ() == eventLoc.getBlockZ())
-                {
-                    // There is no way for us to pass the actual cause (the entity) of an explosion to bukkit other than this additional event
-                    FakeEntityExplodeEvent compatEvent = new FakeEntityExplodeEvent(explosionStorage.getExplosionCause(), explosionStorage.getCenterLocation(), event.blockList(), event.getYield());
-                    plugin.getServer().getPluginManager().callEvent(compatEvent);
+                // There is no way for us to pass the actual cause (the entity) of an explosion to bukkit other than this additional event
+                FakeEntityExplodeEvent compatEvent = new FakeEntityExplodeEvent(explosion.getExplosionCause(), explosionStorage, explosion.getCenterLocation(), event.blockList(), event.getYield());
+                plugin.getServer().getPluginManager().callEvent(compatEvent);
 
-                    if (compatEvent.isCancelled())
-                        //We cancel the event because we only want the event with the correct Entity to be logged
-                        event.setCancelled(true);
-                    else //do our additional processing
-                        explosionLogic(compatEvent);
-
-                    //Some plugins might decide to clear the blocklist instead of cancelling the event, in that case the modified blocklist is the same
-                    //Handle blockbreaking and setting fire ourselves
-                    for (Block block : event.blockList())
-                        switch (block.getType())
-                        {
-                            case FIRE:
-                                //block.setType(Material.FIRE); do nuthing
-                                break;
-                            case AIR:
-                                break; //dunno why some plugins log breaking of air :D
-                            default:
-                                block.breakNaturally();
-                        }
-                    List<Block> copy = new ArrayList<Block>(event.blockList());
-                    event.blockList().clear(); //we don't want this event to be recorded, but we still want the explosion particles
-                    compatEvent.blockList().addAll(copy);
-
-                    explosionStorage.clearQueue();
-                }
+                if (compatEvent.isCancelled())
+                    //We cancel the event because we only want the event with the correct Entity to be logged
+                    event.setCancelled(true);
+                else //do our additional processing
+                    explosionLogic(compatEvent);
+
+                //Some plugins might decide to clear the blocklist instead of cancelling the event, in that case the modified blocklist is the same
+                //Handle blockbreaking and setting fire ourselves
+                for (Block block : event.blockList())
+                    switch (block.getType())
+                    {
+                        case FIRE:
+                            //block.setType(Material.FIRE); do nuthing
+                            break;
+                        case AIR:
+                            break; //dunno why some plugins log breaking of air :D
+                        default:
+                            block.breakNaturally();
+                    }
+                List<Block> copy = new ArrayList<Block>(event.blockList());
+                event.blockList().clear(); //we don't want this event to be recorded, but we still want the explosion particles
+                compatEvent.blockList().addAll(copy);
             }
         }
     }
@@ -259,6 +349,7 @@ public class Explosions extends ListenerModule
     //   | |__ / _ \| .` | |) | || .` | (_ | | _ \ |_| (_) | (__| ' <\__ \
     //   |____/_/ \_\_|\_|___/___|_|\_|\___| |___/____\___/ \___|_|\_\___/
     //
+    @HandlerGate(RootNode.EXPLOSIONS_FYLING_BLOCKS_ENABLE)
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true) //so we are last and if a block protection plugin cancelled the event we know it
     public void handleLandedBlocksFromPhysics(EntityChangeBlockEvent event)
     {
@@ -300,10 +391,11 @@ public class Explosions extends ListenerModule
      *
      * @param event event that occurred
      */
-    public void explosionLogic(EntityExplodeEvent event)
+    public void explosionLogic(FakeEntityExplodeEvent event)
     {
-        Validate.notNull(event.getEntity(), "Entity was null [explosionLogic], but shouldn't be! x:" + event.getLocation().getBlockX() + " y:" + event.getLocation().getBlockY() + " z:" + event.getLocation().getBlockZ());
-        final Entity sourceEntity = event.getEntity();
+        Validate.notNull(event.getSource(), "Source was null [explosionLogic], but shouldn't be! x:" + event.getLocation().getBlockX() + " y:" + event.getLocation().getBlockY() + " z:" + event.getLocation().getBlockZ());
+        //the type is enough, so virtual sources don't need an entity
+        final EntityType sourceType = event.getEntityType();
         final World world = event.getLocation().getWorld();
 //        final String worldName = world.getName();
 //        final Location location = sourceEntity.getLocation();
@@ -319,7 +411,7 @@ public class Explosions extends ListenerModule
 //        final double spreadVel = CFG.getDouble(RootNode.EXPLOSIONS_FLYING_BLOCKS_SPREAD_VEL, worldName);
 
 
-        if (sourceEntity instanceof Creeper || sourceEntity instanceof TNTPrimed)
+        if (sourceType == EntityType.CREEPER || sourceType == EntityType.PRIMED_TNT)
         {
             event.setYield(1); //so people have enough blocks to fill creeper holes and because TNT explodes multiple times
         }
@@ -400,35 +492,37 @@ public class Explosions extends ListenerModule
      */
     public void applyExplosionPhysics(Collection<Block> blocks, final Location center, final int flyPercentage, final double upVel, final double spreadVel)
     {
-        final List<FallingBlock> fallingBlockList = new ArrayList<FallingBlock>();
+        final List<DebrisScheduler.Debris> debris = new ArrayList<DebrisScheduler.Debris>();
         for (Block block : blocks)
         {
-            if (block.getType().isSolid())
-            {
-                //Only a few of the blocks fly as an effect
-                if (plugin.random(flyPercentage))
-                {
-                    FallingBlock fall = block.getLocation().getWorld().spawnFallingBlock(block.getLocation(), block.getType(), block.getData());
-                    fall.setMetadata(tag, new FixedMetadataValue(plugin, block.getLocation())); //decide on the distance if block should be placed
-                    //fall.setMetadata("drops", new FixedMetadataValue(plugin, block.getDrops()));
-                    fall.setDropItem(CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_DROP_ITEM, block.getWorld().getName()));
-                    UtilityModule.moveUp(fall, upVel);
-                    //block.setType(Material.AIR);
-                    fallingBlockList.add(fall);
-                }
-            }
+            //Only a few of the blocks fly as an effect
+            if (block.getType().isSolid() && plugin.random(flyPercentage))
+                debris.add(new DebrisScheduler.Debris(block.getLocation(), block.getType(), block.getData()));
         }
+        debrisScheduler.submit(center, debris, upVel, spreadVel);
+    }
 
-        plugin.getServer().getScheduler().runTaskLater(plugin, new Runnable()
-        {
-            @Override
-            public void run()
-            {
-                for (FallingBlock fall : fallingBlockList)
-                {
-                    UtilityModule.moveAway(fall, center, spreadVel);
-                }
-            }
-        }, 2L);
+
+    /**
+     * Throw a block up into the air
+     *
+     * @param location where the block was
+     * @param type     type of the block
+     * @param data     data of the block
+     * @param upVel    how fast to propel upwards
+     *
+     * @return the flying block or null if there are too many FallingBlocks already
+     */
+    public FallingBlock launch(Location location, Material type, byte data, double upVel)
+    {
+        FallingBlock fall = fallingBlocks.spawn(location, type, data);
+        if (fall == null) //too many FallingBlocks already, the debris is only for show
+            return null;
+        fall.setMetadata(tag, new FixedMetadataValue(plugin, location)); //decide on the distance if block should be placed
+        //fall.setMetadata("drops", new FixedMetadataValue(plugin, block.getDrops()));
+        fall.setDropItem(CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_DROP_ITEM, location.getWorld().getName()));
+        UtilityModule.moveUp(fall, upVel);
+        //block.setType(Material.AIR);
+        return fall;
     }
-}
\ No newline at end of file
+}
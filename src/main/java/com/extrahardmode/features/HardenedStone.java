@@ -25,6 +25,7 @@ package com.extrahardmode.features;
 import com.extrahardmode.ExtraHardMode;
 import com.extrahardmode.config.RootConfig;
 import com.extrahardmode.config.RootNode;
+import com.extrahardmode.config.WorldConfigView;
 import com.extrahardmode.config.messages.MessageNode;
 import com.extrahardmode.events.EhmHardenedStoneEvent;
 import com.extrahardmode.module.BlockModule;
@@ -34,6 +35,7 @@ import com.extrahardmode.module.UtilityModule;
 import com.extrahardmode.service.Feature;
 import com.extrahardmode.service.ListenerModule;
 import com.extrahardmode.service.PermissionNode;
+import com.extrahardmode.service.config.ConfigNode;
 import com.extrahardmode.service.config.customtypes.BlockRelationsList;
 import com.extrahardmode.service.config.customtypes.BlockType;
 import com.extrahardmode.service.config.customtypes.BlockTypeList;
@@ -49,8 +51,7 @@ import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.inventory.ItemStack;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Hardened Stone is there to make branchmining harder/impossible
@@ -68,10 +69,32 @@ public class HardenedStone extends ListenerModule
 
     private PlayerModule playerModule;
 
+    /**
+     * Faces which are softened when ore is broken
+     */
+    private static final BlockFace[] ADJACENT_FACES = {BlockFace.WEST, BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.UP, BlockFace.DOWN};
+
+    /**
+     * Nodes the rules are built from, the module restarts to rebuild them if one of them changes
+     */
+    private static final RootNode[] RULE_NODES = {RootNode.SUPER_HARD_STONE_PHYSICS_APPLY, RootNode.SUPER_HARD_STONE_TOOLS,
+            RootNode.SUPER_HARD_BLOCKS, RootNode.SUPER_HARD_STONE_ORE_BLOCKS, RootNode.SUPER_HARD_STONE_STONE_BLOCKS};
+
+    /**
+     * World -> what happens when a block is broken in that world
+     */
+    private final Map<UUID, StoneRules> rules = new HashMap<UUID, StoneRules>();
+
+    /**
+     * The world of the last broken block and its rules, blocks are usually broken in the same world
+     */
+    private UUID lastWorld;
+    private StoneRules lastRules;
+
 
     public HardenedStone(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.SUPER_HARD_STONE, RootNode.SUPER_HARD_STONE_PHYSICS);
     }
 
 
@@ -86,6 +109,28 @@ public class HardenedStone extends ListenerModule
     }
 
 
+    @Override
+    public void closing()
+    {
+        super.closing();
+        rules.clear();
+        lastWorld = null;
+        lastRules = null;
+    }
+
+
+    @Override
+    public boolean isAffectedBy(Set<ConfigNode> changed)
+    {
+        if (super.isAffectedBy(changed))
+            return true;
+        for (RootNode node : RULE_NODES)
+            if (changed.contains(node))
+                return true;
+        return false;
+    }
+
+
     /**
      * When a player breaks stone
      */
@@ -93,45 +138,44 @@ public class HardenedStone extends ListenerModule
     public void onBlockBreak(BlockBreakEvent event)
     {
         Block block = event.getBlock();
-        World world = block.getWorld();
-        Player player = event.getPlayer();
-
-        final boolean hardStoneEnabled = CFG.getBoolean(RootNode.SUPER_HARD_STONE, world.getName());
-        final boolean hardStonePhysix = CFG.getBoolean(RootNode.SUPER_HARD_STONE_PHYSICS, world.getName());
-        final boolean applyPhysics = CFG.getBoolean(RootNode.SUPER_HARD_STONE_PHYSICS_APPLY, world.getName());
-        final boolean playerBypasses = playerModule.playerBypasses(player, Feature.HARDENEDSTONE);
+        final StoneRules worldRules = getRules(block.getWorld());
 
-        final BlockTypeList tools = CFG.getBlocktypeList(RootNode.SUPER_HARD_STONE_TOOLS, world.getName());
-        final BlockTypeList physicsBlocks = CFG.getBlocktypeList(RootNode.SUPER_HARD_STONE_ORE_BLOCKS, world.getName());
-        final BlockRelationsList stoneBlocks = CFG.getBlockRelationList(RootNode.SUPER_HARD_STONE_STONE_BLOCKS, world.getName());
-        final BlockTypeList hardBlocks = CFG.getBlocktypeList(RootNode.SUPER_HARD_BLOCKS, world.getName());
+        //most broken blocks are neither hardened nor ore
+        final int blockId = block.getTypeId();
+        if (!worldRules.isRelevant(blockId))
+            return;
+        final byte blockData = block.getData();
+        Player player = event.getPlayer();
 
         // FEATURE: stone breaks tools much quicker
-        if (hardStoneEnabled && hardBlocks.contains(block) && !playerBypasses)
+        if (worldRules.isHard(blockId, blockData) && !playerModule.playerBypasses(player, Feature.HARDENEDSTONE))
         {
             ItemStack inHandStack = player.getItemInHand();
 
             if (inHandStack != null)
             {
-                int toolId = inHandStack.getType().getId();
-                short blocks = 0;
-                BlockType toolSettings = tools.get(toolId);
-                if (toolSettings != null && toolSettings.getAllMeta().size() > 0)
-                    blocks = toolSettings.getMeta();
-                EhmHardenedStoneEvent hardEvent = new EhmHardenedStoneEvent(player, inHandStack, blocks);
-
-                if (toolSettings != null)
+                final short toolCost = worldRules.getToolCost(inHandStack.getTypeId());
+                short blocks = toolCost > 0 ? toolCost : 0;
+
+                if (toolCost != StoneRules.NOT_A_TOOL)
                 {
+                    ItemStack tool = inHandStack;
                     /* Broadcast an Event for other Plugins to change if the tool can break stone and the amount of blocks */
-                    plugin.getServer().getPluginManager().callEvent(hardEvent);
+                    if (EhmHardenedStoneEvent.getHandlerList().getRegisteredListeners().length > 0)
+                    {
+                        EhmHardenedStoneEvent hardEvent = new EhmHardenedStoneEvent(player, inHandStack, blocks);
+                        plugin.getServer().getPluginManager().callEvent(hardEvent);
+                        tool = hardEvent.getTool();
+                        blocks = hardEvent.getNumOfBlocks();
+                    }
 
                     // otherwise, drastically reduce tool durability when breaking stone
-                    if (hardEvent.getNumOfBlocks() > 0)
+                    if (blocks > 0)
                     {
-                        player.setItemInHand(UtilityModule.damage(hardEvent.getTool(), hardEvent.getNumOfBlocks()));
+                        player.setItemInHand(UtilityModule.damage(tool, blocks));
                     }
                 }
-                if (hardEvent.getNumOfBlocks() == 0)
+                if (blocks == 0)
                 {
                     messenger.send(player, MessageNode.STONE_MINING_HELP, PermissionNode.SILENT_STONE_MINING_HELP);
                     event.setCancelled(true);
@@ -141,15 +185,16 @@ public class HardenedStone extends ListenerModule
         }
 
         // when ore is broken, it softens adjacent stone important to ensure players can reach the ore they break
-        if (hardStonePhysix && physicsBlocks.contains(block))
+        if (worldRules.isOre(blockId, blockData))
         {
-            for (BlockFace face : blockModule.getTouchingFaces())
+            for (BlockFace face : ADJACENT_FACES)
             {
                 Block adjacentBlock = block.getRelative(face);
-                if (stoneBlocks.contains(adjacentBlock))
+                BlockType softened = worldRules.getSoftened(adjacentBlock.getTypeId(), adjacentBlock.getData());
+                if (softened != null)
                 {
-                    adjacentBlock.setTypeIdAndData(stoneBlocks.get(adjacentBlock).getBlockId(), stoneBlocks.get(adjacentBlock).getByteMeta(), true);
-                    if (applyPhysics)
+                    adjacentBlock.setTypeIdAndData(softened.getBlockId(), softened.getByteMeta(), true);
+                    if (worldRules.appliesPhysics())
                         blockModule.applyPhysics(adjacentBlock, true);
                 }
             }
@@ -157,6 +202,27 @@ public class HardenedStone extends ListenerModule
     }
 
 
+    /**
+     * Get the rules of a world, they are built once and then kept until the module restarts
+     */
+    private StoneRules getRules(World world)
+    {
+        final UUID worldId = world.getUID();
+        if (!worldId.equals(lastWorld))
+        {
+            StoneRules worldRules = rules.get(worldId);
+            if (worldRules == null)
+            {
+                worldRules = StoneRules.create(CFG.getView(world));
+                rules.put(worldId, worldRules);
+            }
+            lastWorld = worldId;
+            lastRules = worldRules;
+        }
+        return lastRules;
+    }
+
+
     /**
      * FIX: prevent players from placing ore as an exploit to work around the hardened stone rule
      */
@@ -252,4 +318,127 @@ public class HardenedStone extends ListenerModule
             }
         }
     }
+
+
+    /**
+     * Everything the block break handler needs from the config of one world, indexed by block and tool id.
+     */
+    static final class StoneRules
+    {
+        /**
+         * Tool cost of an item that isn't listed as a tool
+         */
+        static final short NOT_A_TOOL = -1;
+
+        private static final int MAX_INDEXED_ID = 4095;
+
+        private final boolean hardStone;
+        private final boolean physics;
+        private final boolean applyPhysics;
+
+        private final BlockTypeList tools;
+        private final BlockTypeList hardBlocks;
+        private final BlockTypeList oreBlocks;
+        private final BlockRelationsList stoneBlocks;
+
+        /**
+         * Block id -> can the block be hardened or ore with any data value
+         */
+        private final boolean[] relevant = new boolean[MAX_INDEXED_ID + 1];
+
+        /**
+         * Tool id -> how many blocks the tool can break, {@link #NOT_A_TOOL} if not listed
+         */
+        private final short[] toolCosts = new short[MAX_INDEXED_ID + 1];
+
+
+        StoneRules(boolean hardStone, boolean physics, boolean applyPhysics, BlockTypeList tools,
+                   BlockTypeList hardBlocks, BlockTypeList oreBlocks, BlockRelationsList stoneBlocks)
+        {
+            this.hardStone = hardStone;
+            this.physics = physics;
+            this.applyPhysics = applyPhysics;
+            this.tools = tools;
+            this.hardBlocks = hardBlocks;
+            this.oreBlocks = oreBlocks;
+            this.stoneBlocks = stoneBlocks;
+
+            for (int id = 0; id <= MAX_INDEXED_ID; id++)
+                relevant[id] = hardStone && hardBlocks.contains(id) || physics && oreBlocks.contains(id);
+            Arrays.fill(toolCosts, NOT_A_TOOL);
+            for (BlockType tool : tools.toArray())
+                if (tool.getBlockId() >= 0 && tool.getBlockId() <= MAX_INDEXED_ID)
+                    toolCosts[tool.getBlockId()] = costOf(tool);
+        }
+
+
+        static StoneRules create(WorldConfigView cfg)
+        {
+            return new StoneRules(
+                    cfg.getBoolean(RootNode.SUPER_HARD_STONE),
+                    cfg.getBoolean(RootNode.SUPER_HARD_STONE_PHYSICS),
+                    cfg.getBoolean(RootNode.SUPER_HARD_STONE_PHYSICS_APPLY),
+                    cfg.getBlocktypeList(RootNode.SUPER_HARD_STONE_TOOLS),
+                    cfg.getBlocktypeList(RootNode.SUPER_HARD_BLOCKS),
+                    cfg.getBlocktypeList(RootNode.SUPER_HARD_STONE_ORE_BLOCKS),
+                    cfg.getBlockRelationList(RootNode.SUPER_HARD_STONE_STONE_BLOCKS));
+        }
+
+
+        /**
+         * @return false if breaking a block with this id never does anything
+         */
+        boolean isRelevant(int blockId)
+        {
+            return blockId < 0 || blockId > MAX_INDEXED_ID || relevant[blockId];
+        }
+
+
+        boolean isHard(int blockId, byte data)
+        {
+            return hardStone && hardBlocks.contains(blockId, data);
+        }
+
+
+        boolean isOre(int blockId, byte data)
+        {
+            return physics && oreBlocks.contains(blockId, data);
+        }
+
+
+        /**
+         * @return if softened blocks should fall
+         */
+        boolean appliesPhysics()
+        {
+            return applyPhysics;
+        }
+
+
+        /**
+         * @return how many blocks the tool can break, 0 if it can't break hardened blocks or {@link #NOT_A_TOOL}
+         */
+        short getToolCost(int toolId)
+        {
+            if (toolId >= 0 && toolId <= MAX_INDEXED_ID)
+                return toolCosts[toolId];
+            BlockType tool = tools.get(toolId);
+            return tool != null ? costOf(tool) : NOT_A_TOOL;
+        }
+
+
+        /**
+         * @return what the block turns into when ore next to it is broken, null if it stays the same
+         */
+        BlockType getSoftened(int blockId, byte data)
+        {
+            return stoneBlocks.get(blockId, data);
+        }
+
+
+        private static short costOf(BlockType tool)
+        {
+            return tool.hasMeta() ? tool.getMeta() : 0;
+        }
+    }
 }
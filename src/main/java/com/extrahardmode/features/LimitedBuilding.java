@@ -57,7 +57,7 @@ public class LimitedBuilding extends ListenerModule
 
     public LimitedBuilding(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.LIMITED_BLOCK_PLACEMENT);
     }
 
 
@@ -28,7 +28,7 @@ public class MoreTnt extends ListenerModule
 
     public MoreTnt(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.MORE_TNT_NUMBER);
     }
 
 
@@ -27,6 +27,7 @@ import com.extrahardmode.config.RootConfig;
 import com.extrahardmode.config.RootNode;
 import com.extrahardmode.module.BlockModule;
 import com.extrahardmode.module.PlayerModule;
+import com.extrahardmode.module.TreeDetector;
 import com.extrahardmode.service.Feature;
 import com.extrahardmode.service.ListenerModule;
 import com.extrahardmode.task.FallingLogsTask;
@@ -39,8 +40,7 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.BlockBreakEvent;
 
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -69,7 +69,7 @@ public class RealisticChopping extends ListenerModule
      */
     public RealisticChopping(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.BETTER_TREE_CHOPPING);
     }
 
 
@@ -99,37 +99,13 @@ public class RealisticChopping extends ListenerModule
         final boolean playerHasBypass = playerModule.playerBypasses(player, Feature.REALISTIC_CHOPPING);
 
         // FEATURE: trees chop more naturally
-        if ((block.getType() == Material.LOG || block.getType() == Material.LOG_2) && betterTreeChoppingEnabled && !playerHasBypass)
+        if (TreeDetector.isLog(block.getType()) && betterTreeChoppingEnabled && !playerHasBypass)
         {
-            //Are there any leaves above the log? -> tree
-            boolean isTree = false;
-            checkers:
-            for (int i = 1; i < 30; i++)
-            {
-                Material upType = block.getRelative(BlockFace.UP, i).getType();
-                switch (upType)
-                {
-                    case LEAVES:
-                    case LEAVES_2:
-                    {
-                        isTree = true;
-                        break checkers;
-                    }
-                    case AIR:
-                    case LOG:
-                    case LOG_2:
-                    {
-                        break; //skip to next iteration
-                    }
-                    default: //if something other than log/air this is most likely part of a building
-                    {
-                        break checkers;
-                    }
-                }
-            }
-
-            if (isTree)
+            //Logs connected to natural leaves -> tree
+            TreeDetector.Tree tree = TreeDetector.detect(block);
+            if (tree.isNatural())
             {
+                //The trunk above falls down right away
                 Block aboveLog = block.getRelative(BlockFace.UP);
                 loop:
                 for (int limit = 0; limit < 30; limit++)
@@ -137,18 +113,7 @@ public class RealisticChopping extends ListenerModule
                     switch (aboveLog.getType())
                     {
                         case AIR:
-                        {
-                            List<Block> logs = new LinkedList<Block>(Arrays.asList(blockModule.getBlocksInArea(aboveLog.getLocation(), 1, 5, Material.LOG)));
-                            logs.addAll(Arrays.asList(blockModule.getBlocksInArea(aboveLog.getLocation(), 3, 5, Material.LOG_2)));
-                            for (Block log : logs)
-                            {
-                                //TODO EhmRealisticChoppingLooseLogEvent
-                                //check 2 blocks down for logs to see if it it's a stem
-                                if (log.getRelative(BlockFace.DOWN).getType() != Material.LOG && !(log.getRelative(BlockFace.DOWN, 2).getType() == Material.LOG || log.getRelative(BlockFace.DOWN, 2).getType() == Material.LOG_2))
-                                    plugin.getServer().getScheduler().runTaskLater(plugin, new FallingLogsTask(plugin, log), plugin.getRandom().nextInt(50/*so they don't fall at once*/));
-                            }
-                            break; //can air fall?
-                        }
+                            break;
                         case LOG:
                         case LOG_2:
                         {
@@ -160,6 +125,20 @@ public class RealisticChopping extends ListenerModule
                     }
                     aboveLog = aboveLog.getRelative(BlockFace.UP);
                 }
+
+                //Branches which aren't supported by a stem anymore fall down gradually
+                List<Block> looseLogs = new ArrayList<Block>();
+                for (Block log : tree.getLogs())
+                {
+                    //TODO EhmRealisticChoppingLooseLogEvent
+                    if (log.getY() <= block.getY() || !TreeDetector.isLog(log.getType()))
+                        continue;
+                    //check 2 blocks down for logs to see if it it's a stem
+                    if (log.getRelative(BlockFace.DOWN).getType() != Material.LOG && !TreeDetector.isLog(log.getRelative(BlockFace.DOWN, 2).getType()))
+                        looseLogs.add(log);
+                }
+                if (!looseLogs.isEmpty())
+                    new FallingLogsTask(plugin, looseLogs, 50/*so they don't fall at once*/).runTaskTimer(plugin, 0L, 1L);
             }
         }
     }
@@ -61,7 +61,7 @@ public class Torches extends ListenerModule
 
     public Torches(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.LIMITED_TORCH_PLACEMENT, RootNode.STANDARD_TORCH_MIN_Y, RootNode.RAIN_BREAKS_TORCHES, RootNode.SNOW_BREAKS_CROPS);
     }
 
 
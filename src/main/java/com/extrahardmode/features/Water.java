@@ -25,6 +25,7 @@ package com.extrahardmode.features;
 import com.extrahardmode.ExtraHardMode;
 import com.extrahardmode.config.RootConfig;
 import com.extrahardmode.config.RootNode;
+import com.extrahardmode.config.WorldConfigView;
 import com.extrahardmode.config.messages.MessageNode;
 import com.extrahardmode.module.DataStoreModule;
 import com.extrahardmode.module.MsgModule;
@@ -62,7 +63,7 @@ public class Water extends ListenerModule
 
     public Water(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.NO_SWIMMING_IN_ARMOR);
     }
 
 
@@ -90,18 +91,19 @@ public class Water extends ListenerModule
         Location to = event.getTo();
         Block fromBlock = from.getBlock();
         Block toBlock = to.getBlock();
+        final WorldConfigView worldCfg = CFG.getView(world);
 
-        final boolean noSwimingInArmor = CFG.getBoolean(RootNode.NO_SWIMMING_IN_ARMOR, world.getName());
+        final boolean noSwimingInArmor = worldCfg.getBoolean(RootNode.NO_SWIMMING_IN_ARMOR);
         final boolean playerBypasses = playerModule.playerBypasses(player, Feature.MONSTER_GLYDIA);
-        final boolean blockWaterElevators = CFG.getBoolean(RootNode.NO_SWIMMING_IN_ARMOR_BLOCK_ELEVATORS, world.getName());
+        final boolean blockWaterElevators = worldCfg.getBoolean(RootNode.NO_SWIMMING_IN_ARMOR_BLOCK_ELEVATORS);
 
-        final float maxWeight = (float) CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_MAX_POINTS, world.getName());
-        final float armorPoints = (float) CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_ARMOR_POINTS, world.getName());
-        final float inventoryPoints = (float) CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_INV_POINTS, world.getName());
-        final float toolPoints = (float) CFG.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_TOOL_POINTS, world.getName());
+        final float maxWeight = (float) worldCfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_MAX_POINTS);
+        final float armorPoints = (float) worldCfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_ARMOR_POINTS);
+        final float inventoryPoints = (float) worldCfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_INV_POINTS);
+        final float toolPoints = (float) worldCfg.getDouble(RootNode.NO_SWIMMING_IN_ARMOR_TOOL_POINTS);
 
-        final int drowningRate = CFG.getInt(RootNode.NO_SWIMMING_IN_ARMOR_DROWN_RATE, world.getName());
-        final int overEncumbranceExtra = CFG.getInt(RootNode.NO_SWIMMING_IN_ARMOR_ENCUMBRANCE_EXTRA, world.getName());
+        final int drowningRate = worldCfg.getInt(RootNode.NO_SWIMMING_IN_ARMOR_DROWN_RATE);
+        final int overEncumbranceExtra = worldCfg.getInt(RootNode.NO_SWIMMING_IN_ARMOR_ENCUMBRANCE_EXTRA);
 
         final float normalDrownVel = -0.5F;
         final float overwaterDrownVel = -0.7F;
@@ -27,6 +27,7 @@ import com.extrahardmode.config.ExplosionType;
 import com.extrahardmode.config.RootConfig;
 import com.extrahardmode.config.RootNode;
 import com.extrahardmode.module.EntityHelper;
+import com.extrahardmode.module.ExplosionSource;
 import com.extrahardmode.service.ListenerModule;
 import com.extrahardmode.task.CreateExplosionTask;
 import org.bukkit.Location;
@@ -162,8 +163,7 @@ public class Blazes extends ListenerModule
         if (blazesExplodeOnDeath && entity instanceof Blaze && world.getEnvironment() == World.Environment.NORMAL)
         {
             //Label explosion as creeper
-            Creeper creeper = world.spawn(entity.getLocation(), Creeper.class);
-            creeper.remove();
+            ExplosionSource creeper = ExplosionSource.virtual(EntityType.CREEPER, entity.getLocation());
             new CreateExplosionTask(plugin, entity.getLocation(), ExplosionType.OVERWORLD_BLAZE, creeper).run(); // equal to a TNT blast, sets fires
             // fire a fireball straight up in normal worlds
             Fireball fireball = (Fireball) world.spawnEntity(entity.getLocation(), EntityType.FIREBALL);
@@ -225,8 +225,7 @@ public class Blazes extends ListenerModule
             EntityHelper.spawn(entity.getLocation().add(0.0, 2.0, 0.0), EntityType.BLAZE); // replace with blaze
 
             //Explosion labeled as fireball
-            Fireball ball = world.spawn(entity.getLocation(), Fireball.class);
-            ball.remove();
+            ExplosionSource ball = ExplosionSource.virtual(EntityType.FIREBALL, entity.getLocation());
             new CreateExplosionTask(plugin, entity.getLocation(), ExplosionType.MAGMACUBE_FIRE, ball).run(); // fiery explosion for effect
             //TODO EhmMagmaCubeExplodeEvent
         }
@@ -53,7 +53,7 @@ public class Endermen extends ListenerModule
 
     public Endermen(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.IMPROVED_ENDERMAN_TELEPORTATION);
     }
 
 
@@ -52,7 +52,7 @@ public class Ghasts extends ListenerModule
 
     public Ghasts(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.GHASTS_DEFLECT_ARROWS);
     }
 
 
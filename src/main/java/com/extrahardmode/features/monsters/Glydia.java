@@ -29,10 +29,13 @@ import com.extrahardmode.config.messages.MessageNode;
 import com.extrahardmode.events.fakeevents.FakeEntityExplodeEvent;
 import com.extrahardmode.module.DataStoreModule;
 import com.extrahardmode.module.EntityHelper;
+import com.extrahardmode.module.FallingBlockRegistry;
 import com.extrahardmode.module.MsgModule;
 import com.extrahardmode.module.PlayerModule;
+import com.extrahardmode.module.RegionQuery;
 import com.extrahardmode.service.Feature;
 import com.extrahardmode.service.FindAndReplace;
+import com.extrahardmode.service.HandlerGate;
 import com.extrahardmode.service.ListenerModule;
 import com.extrahardmode.task.DragonAttackPatternTask;
 import com.extrahardmode.task.DragonAttackTask;
@@ -41,7 +44,6 @@ import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 import org.bukkit.entity.*;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -71,6 +73,8 @@ public class Glydia extends ListenerModule
 
     private PlayerModule playerModule;
 
+    private FallingBlockRegistry fallingBlocks;
+
 
     public Glydia(ExtraHardMode plugin)
     {
@@ -86,6 +90,7 @@ public class Glydia extends ListenerModule
         data = plugin.getModuleForClass(DataStoreModule.class);
         messenger = plugin.getModuleForClass(MsgModule.class);
         playerModule = plugin.getModuleForClass(PlayerModule.class);
+        fallingBlocks = plugin.getModuleForClass(FallingBlockRegistry.class);
     }
 
 
@@ -94,6 +99,7 @@ public class Glydia extends ListenerModule
      * <p/>
      * Limited building in the end
      */
+    @HandlerGate(RootNode.ENDER_DRAGON_NO_BUILDING)
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onBlockBreak(BlockBreakEvent breakEvent)
     {
@@ -136,6 +142,7 @@ public class Glydia extends ListenerModule
      * <p/>
      * Limited building in the end
      */
+    @HandlerGate(RootNode.ENDER_DRAGON_NO_BUILDING)
     @EventHandler(ignoreCancelled = true, priority = EventPriority.LOWEST)
     public void onBlockPlace(BlockPlaceEvent placeEvent)
     {
@@ -162,6 +169,7 @@ public class Glydia extends ListenerModule
      * <p/>
      * drop villager eggs , drop a dragon egg , announce the killers
      */
+    @HandlerGate({RootNode.ENDER_DRAGON_DROPS_VILLAGER_EGGS, RootNode.ENDER_DRAGON_DROPS_EGG, RootNode.ENDER_DRAGON_COMBAT_ANNOUNCEMENTS, RootNode.ENDER_DRAGON_ADDITIONAL_ATTACKS})
     @EventHandler
     public void onEntityDeath(EntityDeathEvent event)
     {
@@ -219,6 +227,7 @@ public class Glydia extends ListenerModule
      * <p/>
      * announce his death
      */
+    @HandlerGate(RootNode.ENDER_DRAGON_COMBAT_ANNOUNCEMENTS)
     @EventHandler
     public void onPlayerDeath(PlayerDeathEvent event)
     {
@@ -241,6 +250,7 @@ public class Glydia extends ListenerModule
      * <p/>
      * remove him from the Players fighting the Dragon
      */
+    @HandlerGate(RootNode.ENDER_DRAGON_ADDITIONAL_ATTACKS)
     @EventHandler
     public void onPlayerTpOut(PlayerChangedWorldEvent event)
     {
@@ -255,6 +265,7 @@ public class Glydia extends ListenerModule
      * <p/>
      * initiate the additional attacks
      */
+    @HandlerGate(RootNode.ENDER_DRAGON_ADDITIONAL_ATTACKS)
     @EventHandler(ignoreCancelled = true, priority = EventPriority.LOWEST)
     public void onEntityDamage(EntityDamageEvent event)
     {
@@ -411,6 +422,7 @@ public class Glydia extends ListenerModule
      * <p/>
      * Spawn monsters when the dragon shoots fireballs ,
      */
+    @HandlerGate(RootNode.ENDER_DRAGON_ADDITIONAL_ATTACKS)
     @EventHandler
     public void onExplosion(EntityExplodeEvent event)
     {
@@ -433,26 +445,26 @@ public class Glydia extends ListenerModule
                 {
                     spawnedMonster = entity.getWorld().spawnEntity(entity.getLocation(), EntityType.BLAZE);
 
-                    for (int x1 = -2; x1 <= 2; x1++)
+                    final World fireWorld = fireball.getWorld();
+                    final Location center = fireball.getLocation();
+                    RegionQuery.scan(fireWorld, center.getBlockX(), center.getBlockY(), center.getBlockZ(), 2, -2, 2, RegionQuery.Shape.CUBOID, new RegionQuery.BlockVisitor()
                     {
-                        for (int z1 = -2; z1 <= 2; z1++)
+                        @Override
+                        public boolean visit(int x, int y, int z, int typeId)
                         {
-                            for (int y1 = 2; y1 >= -2; y1--)
-                            {
-                                Block block = fireball.getLocation().add(x1, y1, z1).getBlock();
-                                Material underType = block.getRelative(BlockFace.DOWN).getType();
-                                if (block.getType() == Material.AIR && underType != Material.AIR && underType != Material.FIRE)
-                                {
-                                    block.setType(Material.FIRE);
-                                }
-                            }
+                            int underType = y > 0 ? fireWorld.getBlockTypeIdAt(x, y - 1, z) : 0;
+                            if (typeId == 0 && underType != 0 && underType != Material.FIRE.getId())
+                                fireWorld.getBlockAt(x, y, z).setType(Material.FIRE);
+                            return true;
                         }
-                    }
+                    });
 
                     Location location = fireball.getLocation().add(0, 1, 0);
                     for (int i = 0; i < 10; i++)
                     {
-                        FallingBlock fire = world.spawnFallingBlock(location, Material.FIRE, (byte) 0);
+                        FallingBlock fire = fallingBlocks.spawn(location, Material.FIRE, (byte) 0);
+                        if (fire == null) //limit reached, there is enough fire already
+                            break;
                         Vector velocity = Vector.getRandom();
                         if (velocity.getY() < 0)
                         {
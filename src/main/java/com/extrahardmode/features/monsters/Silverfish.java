@@ -49,7 +49,7 @@ public class Silverfish extends ListenerModule
 
     public Silverfish(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.SILVERFISH_CANT_ENTER_BLOCKS, RootNode.SILVERFISH_DROP_COBBLE);
     }
 
 
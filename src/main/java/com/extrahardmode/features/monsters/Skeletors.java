@@ -75,7 +75,9 @@ public class Skeletors extends ListenerModule
      */
     public Skeletors(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.SKELETONS_DEFLECT_ARROWS, RootNode.SKELETONS_SNOWBALLS_ENABLE, RootNode.SKELETONS_FIREWORK_ENABLE,
+                RootNode.SKELETONS_FIREBALL_ENABLE, RootNode.SKELETONS_RELEASE_SILVERFISH_ENABLE, RootNode.SKELETONS_RELEASE_SILVERFISH_KILL,
+                RootNode.SILVERFISH_TEMP_POTION_EFFECT_FIX);
     }
 
 
@@ -54,7 +54,7 @@ public class Witches extends ListenerModule
 
     public Witches(ExtraHardMode plugin)
     {
-        super(plugin);
+        super(plugin, RootNode.BONUS_WITCH_SPAWN_PERCENT, RootNode.WITCHES_ADDITIONAL_ATTACKS);
     }
 
 
@@ -180,7 +180,7 @@ public class Witches extends ListenerModule
             if (makeExplosion)
             {
                 // explosion just for show, no damage
-                new CreateExplosionTask(plugin, location, ExplosionType.EFFECT, null).run();
+                new CreateExplosionTask(plugin, location, ExplosionType.EFFECT).run();
 
                 for (LivingEntity target : event.getAffectedEntities())
                 {
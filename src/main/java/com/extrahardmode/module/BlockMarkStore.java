@@ -0,0 +1,220 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.extrahardmode.module;
+
+
+import com.extrahardmode.ExtraHardMode;
+import com.extrahardmode.service.ListenerModule;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers which blocks have been marked, e.g. water placed from a bucket.
+ * <p/>
+ * Marks are stored per chunk as a sorted set of 16 bit indices into the chunk, so a mark costs two bytes and no
+ * strings have to be built to look one up. Block metadata on the other hand is never removed when a chunk unloads,
+ * here the marks of a chunk are released together with the chunk.
+ */
+public class BlockMarkStore extends ListenerModule
+{
+    /**
+     * World name -> chunk key -> marks in that chunk
+     */
+    private final Map<String, Map<Long, ChunkMarks>> marks = new HashMap<String, Map<Long, ChunkMarks>>();
+
+
+    public BlockMarkStore(ExtraHardMode plugin)
+    {
+        super(plugin);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        marks.clear();
+    }
+
+
+    public void mark(Block block)
+    {
+        mark(block.getWorld().getName(), block.getX(), block.getY(), block.getZ());
+    }
+
+
+    public void unmark(Block block)
+    {
+        unmark(block.getWorld().getName(), block.getX(), block.getY(), block.getZ());
+    }
+
+
+    public boolean isMarked(Block block)
+    {
+        return isMarked(block.getWorld().getName(), block.getX(), block.getY(), block.getZ());
+    }
+
+
+    /**
+     * Mark the block at the given position, positions outside of 0-255 can't be marked
+     */
+    public void mark(String world, int x, int y, int z)
+    {
+        if (y < 0 || y > 255)
+            return;
+        Map<Long, ChunkMarks> chunks = marks.get(world);
+        if (chunks == null)
+        {
+            chunks = new HashMap<Long, ChunkMarks>();
+            marks.put(world, chunks);
+        }
+        final long key = chunkKey(x >> 4, z >> 4);
+        ChunkMarks chunk = chunks.get(key);
+        if (chunk == null)
+        {
+            chunk = new ChunkMarks();
+            chunks.put(key, chunk);
+        }
+        chunk.add(index(x, y, z));
+    }
+
+
+    public void unmark(String world, int x, int y, int z)
+    {
+        final Map<Long, ChunkMarks> chunks = marks.get(world);
+        if (chunks == null || y < 0 || y > 255)
+            return;
+        final long key = chunkKey(x >> 4, z >> 4);
+        final ChunkMarks chunk = chunks.get(key);
+        if (chunk != null && chunk.remove(index(x, y, z)) && chunk.size == 0)
+        {
+            chunks.remove(key);
+            if (chunks.isEmpty())
+                marks.remove(world);
+        }
+    }
+
+
+    public boolean isMarked(String world, int x, int y, int z)
+    {
+        final Map<Long, ChunkMarks> chunks = marks.get(world);
+        if (chunks == null || y < 0 || y > 255)
+            return false;
+        final ChunkMarks chunk = chunks.get(chunkKey(x >> 4, z >> 4));
+        return chunk != null && chunk.contains(index(x, y, z));
+    }
+
+
+    /**
+     * @return how many blocks are marked in all worlds
+     */
+    public int getMarkCount()
+    {
+        int count = 0;
+        for (Map<Long, ChunkMarks> chunks : marks.values())
+            for (ChunkMarks chunk : chunks.values())
+                count += chunk.size;
+        return count;
+    }
+
+
+    private static char index(int x, int y, int z)
+    {
+        return (char) (y << 8 | (z & 15) << 4 | (x & 15));
+    }
+
+
+    private static long chunkKey(int cx, int cz)
+    {
+        return (long) cx << 32 | cz & 0xFFFFFFFFL;
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event)
+    {
+        final Map<Long, ChunkMarks> chunks = marks.get(event.getWorld().getName());
+        if (chunks != null)
+        {
+            chunks.remove(chunkKey(event.getChunk().getX(), event.getChunk().getZ()));
+            if (chunks.isEmpty())
+                marks.remove(event.getWorld().getName());
+        }
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event)
+    {
+        marks.remove(event.getWorld().getName());
+    }
+
+
+    /**
+     * Sorted set of indices into a chunk
+     */
+    private static class ChunkMarks
+    {
+        private char[] indices = new char[4];
+
+        private int size = 0;
+
+
+        boolean contains(char index)
+        {
+            return Arrays.binarySearch(indices, 0, size, index) >= 0;
+        }
+
+
+        void add(char index)
+        {
+            int pos = Arrays.binarySearch(indices, 0, size, index);
+            if (pos >= 0)
+                return;
+            pos = -pos - 1;
+            if (size == indices.length)
+                indices = Arrays.copyOf(indices, size * 2);
+            System.arraycopy(indices, pos, indices, pos + 1, size - pos);
+            indices[pos] = index;
+            size++;
+        }
+
+
+        boolean remove(char index)
+        {
+            final int pos = Arrays.binarySearch(indices, 0, size, index);
+            if (pos < 0)
+                return false;
+            System.arraycopy(indices, pos + 1, indices, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -29,17 +29,25 @@ import com.extrahardmode.config.RootConfig;
 import com.extrahardmode.config.RootNode;
 import com.extrahardmode.service.EHMModule;
 import com.extrahardmode.task.BlockPhysicsCheckTask;
+import com.extrahardmode.task.BlockPhysicsQueue;
+import com.extrahardmode.task.SupportAnalysisTask;
+import org.bukkit.Effect;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Biome;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.FallingBlock;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.material.MaterialData;
-import org.bukkit.metadata.FixedMetadataValue;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.regex.Pattern;
@@ -47,10 +55,22 @@ import java.util.regex.Pattern;
 /** Module that manages blocks and physics logic. */
 public class BlockModule extends EHMModule
 {
+    private RootConfig CFG;
+
     /** Marks a block/location for whatever reason... currently used by waterbucket restrictions */
-    private final String MARK = "ExtraHardMode.Mark";
+    private BlockMarkStore marks;
 
-    private RootConfig CFG;
+    /** Spawns and limits FallingBlocks */
+    private FallingBlockRegistry fallingBlocks;
+
+    /** Knows where FallingBlocks will land */
+    private LandingPredictor landingPredictor;
+
+    /** Physics checks waiting to be processed */
+    private BlockPhysicsQueue physicsQueue;
+
+    /** Id of the task working off the physics queue */
+    private int physicsTaskId = -1;
 
     private final Pattern slabPattern = Pattern.compile("(?!DOUBLE).*STEP");
 
@@ -70,19 +90,48 @@ public class BlockModule extends EHMModule
     public void starting()
     {
         CFG = plugin.getModuleForClass(RootConfig.class);
+        fallingBlocks = plugin.getModuleForClass(FallingBlockRegistry.class);
+        landingPredictor = plugin.getModuleForClass(LandingPredictor.class);
+        marks = plugin.getModuleForClass(BlockMarkStore.class);
+        physicsQueue = new BlockPhysicsQueue(plugin);
+        physicsTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, physicsQueue, 1L, 1L);
+        if (physicsTaskId == -1)
+        {
+            plugin.getLogger().severe("Failed to schedule the physics queue, falling back to one task per block!");
+            physicsQueue = null;
+        }
     }
 
 
     /**
-     * Schedule the physics task
+     * Queue a physics check. A block which is already queued is only checked once.
      *
      * @param block          - Target block.
      * @param recursionCount - Number of times to execute.
      * @param forceCheck     - Whether to force adjacent blocks to be checked for the first iteration
      * @param wait           - how many ticks to wait before the next task, mainly to prevent crashes when FallingBlocks collide
      */
-    public void physicsCheck(Block block, int recursionCount, boolean forceCheck, int wait)
+    public void physicsCheck(final Block block, final int recursionCount, boolean forceCheck, int wait)
     {
+        //Forced checks start at a disturbance and can turn into a cave-in, analyze them on a worker thread
+        if (forceCheck && CFG.getBoolean(RootNode.PHYSICS_ASYNC_ANALYSIS, block.getWorld().getName()))
+        {
+            //wait until the event that caused the disturbance has changed the world
+            plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    SupportAnalysisTask.start(plugin, block, recursionCount, true);
+                }
+            }, wait);
+            return;
+        }
+        if (physicsQueue != null)
+        {
+            physicsQueue.add(block, recursionCount, forceCheck, wait);
+            return;
+        }
         int id = plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, new BlockPhysicsCheckTask(plugin, block, recursionCount, forceCheck), wait);
         // check if it was scheduled. If not, notify in console.
         if (id == -1)
@@ -98,7 +147,7 @@ public class BlockModule extends EHMModule
      * @param block          Block to apply physics to.
      * @param damageEntities if Entities should be damaged
      *
-     * @return the UUID of this FallingBlock
+     * @return the UUID of this FallingBlock, null if the block settled instantly or the FallingBlock limit was reached
      */
     public UUID applyPhysics(Block block, boolean damageEntities)
     {
@@ -110,32 +159,32 @@ public class BlockModule extends EHMModule
         if ((block.getType() == Material.GRASS || block.getType() == Material.MYCEL) && CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_TURN_TO_DIRT, block.getWorld().getName()))
             block.setType(Material.DIRT);
 
-        FallingBlock fallingBlock = block.getWorld().spawnFallingBlock(block.getLocation(), block.getTypeId(), block.getData());
+        if (CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_INSTANT_SETTLE, block.getWorld().getName()))
+        {
+            settle(block, damageEntities);
+            return null;
+        }
+
+        FallingBlock fallingBlock = fallingBlocks.spawn(block.getLocation(), block.getTypeId(), block.getData());
+        if (fallingBlock == null) //too many FallingBlocks, place the block where it would land
+        {
+            settle(block, damageEntities);
+            return null;
+        }
         fallingBlock.setDropItem(CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_DROP_ITEM, block.getWorld().getName()));
         // remove original block
         CompatHandler.logFallingBlockFall(block);
         block.setType(Material.AIR);
+        landingPredictor.invalidate(block);
 
         final boolean breakTorches = CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_BREAK_TORCHES, block.getWorld().getName());
         //TODO expand on this, it's only rudimentary, doesnt break torches if there are multiple fallingblocks (only breaks the first)
         if (breakTorches)
         {
-            Block current = block;
-            Block below = block.getRelative(BlockFace.DOWN);
-            //Check downwards and break any obstructing blocks
-            for (int y = current.getY(); y > 0; y--)
-            {
-                //Only breaks if the block below is solid and the block on top is transparent
-                if (below.getType().isSolid())
-                {
-                    if (breaksFallingBlock(current.getType()))
-                        current.breakNaturally();
-                    //Will land on the block below
-                    break;
-                }
-                current = below;
-                below = current.getRelative(BlockFace.DOWN);
-            }
+            //Break the obstructing block where the FallingBlock will land on top of the first solid block
+            Block landing = landingPredictor.getLandingBlock(block);
+            if (landing != null && breaksFallingBlock(landing.getType()))
+                landing.breakNaturally();
         }
 
         if (damageEntities) //mark so we know the block is from us
@@ -147,27 +196,132 @@ public class BlockModule extends EHMModule
     }
 
 
+    /**
+     * Move a block straight to where a FallingBlock would land, without spawning an entity
+     *
+     * @param block          block to move
+     * @param damageEntities if entities in the landing spot should be damaged
+     */
+    private void settle(Block block, boolean damageEntities)
+    {
+        final int typeId = block.getTypeId();
+        final byte data = block.getData();
+
+        CompatHandler.logFallingBlockFall(block);
+        block.setType(Material.AIR);
+        landingPredictor.invalidate(block);
+
+        land(block, typeId, data, damageEntities);
+    }
+
+
+    /**
+     * Place the block of a FallingBlock that hasn't landed in time where it would land, or drop it. The entity itself
+     * isn't removed.
+     *
+     * @param fallingBlock FallingBlock to settle
+     */
+    public void settle(FallingBlock fallingBlock)
+    {
+        land(fallingBlock.getLocation().getBlock(), fallingBlock.getBlockId(), fallingBlock.getBlockData(), false);
+    }
+
+
+    /**
+     * Put a block where a FallingBlock starting at the given position would land
+     *
+     * @param start          position the block falls from
+     * @param typeId         id of the block
+     * @param data           data of the block
+     * @param damageEntities if entities in the landing spot should be damaged
+     */
+    private void land(Block start, int typeId, byte data, boolean damageEntities)
+    {
+        final World world = start.getWorld();
+
+        //FallingBlocks have no collision with non solid blocks, they land on top of the first solid block
+        final Block landing = landingPredictor.getLandingBlock(start);
+        if (landing == null) //fell into the void
+            return;
+
+        //The landing spot has to be free, otherwise the block breaks like a FallingBlock would
+        final Material obstruction = landing.getType();
+        if (obstruction != Material.AIR && !landing.isLiquid() && obstruction != Material.FIRE)
+        {
+            if (CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_BREAK_TORCHES, world.getName()) && breaksFallingBlock(obstruction))
+                landing.breakNaturally();
+            else
+            {
+                if (CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_DROP_ITEM, world.getName()))
+                    world.dropItemNaturally(landing.getLocation(), new ItemStack(typeId, 1, data));
+                return;
+            }
+        }
+
+        landing.setTypeIdAndData(typeId, data, true);
+        landingPredictor.invalidate(landing);
+        world.playEffect(landing.getLocation(), Effect.STEP_SOUND, typeId);
+        CompatHandler.logFallingBlockLand(landing.getState());
+
+        if (damageEntities)
+            damageLandedOn(world.getNearbyEntities(landing.getLocation().add(0.5, 0.5, 0.5), 0.5, 1.0, 0.5), world, null);
+
+        physicsCheck(landing.getRelative(BlockFace.DOWN), 10, false, 1);
+    }
+
+
+    /**
+     * Damage the entities a falling block landed on
+     *
+     * @param entities entities that have been hit
+     * @param world    world of the block
+     * @param damager  the FallingBlock that landed, null if the block settled without an entity
+     */
+    public void damageLandedOn(Collection<Entity> entities, World world, Entity damager)
+    {
+        final int damageAmount = CFG.getInt(RootNode.MORE_FALLING_BLOCKS_DMG_AMOUNT, world.getName());
+        final boolean environmentalDmg = CFG.getBoolean(RootNode.ENHANCED_ENVIRONMENTAL_DAMAGE, world.getName());
+        if (damageAmount <= 0)
+            return;
+
+        for (Entity ent : entities)
+        {
+            if (ent instanceof LivingEntity)
+            {
+                LivingEntity entityWithDamagedHead = (LivingEntity) ent;
+                //Frighten the player
+                if (damager != null)
+                    entityWithDamagedHead.damage(damageAmount, damager);
+                else
+                    entityWithDamagedHead.damage(damageAmount);
+                if (environmentalDmg)
+                    entityWithDamagedHead.addPotionEffect(new PotionEffect(PotionEffectType.CONFUSION, 140, 10));
+            }
+        }
+    }
+
+
     /**
      * Mark this block for whatever reason
      * <p/>
-     * remember to remove the mark as block metadata persists
+     * remember to remove the mark, marks are only dropped when the chunk unloads
      *
      * @param block to mark
      */
     public void mark(Block block)
     {
-        block.setMetadata(MARK, new FixedMetadataValue(plugin, true));
+        marks.mark(block);
     }
 
 
     /**
-     * Removes Metadata from the block
+     * Removes the mark from the block
      *
-     * @param block to remove the metadata from
+     * @param block to remove the mark from
      */
     public void removeMark(Block block)
     {
-        block.removeMetadata(MARK, plugin);
+        marks.unmark(block);
     }
 
 
@@ -180,7 +334,7 @@ public class BlockModule extends EHMModule
      */
     public boolean isMarked(Block block)
     {
-        return block.getMetadata(MARK).size() > 0;
+        return marks.isMarked(block);
     }
 
 
@@ -294,25 +448,14 @@ public class BlockModule extends EHMModule
      * @param type   of Material to search for
      *
      * @return all the Block with the given Type in the specified radius
+     *
+     * @deprecated use {@link RegionQuery}, which doesn't create a Block for every position
      */
+    @Deprecated
     public Block[] getBlocksInArea(Location loc, int height, int radius, Material type)
     {
-        List<Block> blocks = new ArrayList<Block>();
-        //Height
-        for (int y = 0; y < height; y++)
-        {
-            for (int x = -radius; x <= radius; x++)
-            {
-                for (int z = -radius; z <= radius; z++)
-                {
-                    Block checkBlock = loc.getBlock().getRelative(x, y, z);
-                    if (checkBlock.getType().equals(type))
-                    {
-                        blocks.add(checkBlock);
-                    }
-                }
-            }
-        }
+        List<Block> blocks = RegionQuery.collect(loc.getWorld(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), radius, 0, height - 1,
+                RegionQuery.Shape.CUBOID, type, new ArrayList<Block>());
         return blocks.toArray(new Block[blocks.size()]);
     }
 
@@ -492,5 +635,23 @@ public class BlockModule extends EHMModule
 
     @Override
     public void closing()
-    {/*ignored*/}
+    {
+        if (physicsTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(physicsTaskId);
+        physicsTaskId = -1;
+        if (physicsQueue != null)
+            physicsQueue.clear();
+        physicsQueue = null;
+    }
+
+
+    /**
+     * Get the queue of physics checks, f.e. to read its statistics
+     *
+     * @return the queue or null if this module isn't running
+     */
+    public BlockPhysicsQueue getPhysicsQueue()
+    {
+        return physicsQueue;
+    }
 }
@@ -2,16 +2,64 @@ package com.extrahardmode.module;
 
 
 import com.extrahardmode.ExtraHardMode;
-import com.extrahardmode.service.EHMModule;
+import com.extrahardmode.service.ListenerModule;
+import com.extrahardmode.task.BlockPhysicsQueue;
 import org.apache.commons.lang.Validate;
 import org.bukkit.Location;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.world.WorldUnloadEvent;
 
-/** @author Diemex */
-public class ExplosionCompatStorage extends EHMModule
+import java.util.*;
+
+/**
+ * Remembers what caused our explosions until bukkit calls the EntityExplodeEvent for them.
+ * <p/>
+ * Several explosions can be queued at once, they are matched to their event by world and block position. An
+ * explosion is dropped if no event matched it within a few ticks.
+ *
+ * @author Diemex
+ */
+public class ExplosionCompatStorage extends ListenerModule
 {
-    private Entity explosionCause;
-    private Location centerLocation;
+    /**
+     * Upper limit of explosions waiting for their event, the oldest is dropped if a new one doesn't fit
+     */
+    private static final int MAX_QUEUED = 256;
+
+    /**
+     * Ticks after which an explosion that hasn't been matched is dropped
+     */
+    private static final int MAX_AGE = 2;
+
+    /**
+     * World -> packed block position -> explosions queued at that block, oldest first
+     */
+    private final Map<UUID, Map<Long, QueuedExplosion>> queued = new HashMap<UUID, Map<Long, QueuedExplosion>>();
+
+    /**
+     * All queued explosions in the order they were queued, can contain explosions that have been matched already
+     */
+    private final ArrayDeque<QueuedExplosion> order = new ArrayDeque<QueuedExplosion>();
+
+    /**
+     * How many explosions are waiting for their event
+     */
+    private int queuedCount = 0;
+
+    /**
+     * Ticks since the module started
+     */
+    private long currentTick = 0;
+
+    private int tickTaskId = -1;
+
+    /**
+     * World -> entity type -> removed entity handed to plugins which need an entity for a virtual explosion source
+     */
+    private final Map<UUID, Map<EntityType, Entity>> hiddenEntities = new HashMap<UUID, Map<EntityType, Entity>>();
 
 
     /**
@@ -32,54 +80,234 @@ public class ExplosionCompatStorage extends EHMModule
      * got cancelled we will also cancel our null-entity event.
      *
      * @param centerLocation the location where the explosion occurred
-     * @param cause          the entity responsible for this explosion
+     * @param cause          what is responsible for this explosion
      */
-    public void queueExplosion(Location centerLocation, Entity cause)
+    public void queueExplosion(Location centerLocation, ExplosionSource cause)
     {
         Validate.notNull(centerLocation, "No location provided");
         Validate.notNull(cause, "No valid explosion cause");
 
-        this.centerLocation = centerLocation;
-        this.explosionCause = cause;
+        dropStale();
+        while (queuedCount >= MAX_QUEUED)
+            remove(order.poll());
+
+        final UUID worldId = centerLocation.getWorld().getUID();
+        final long key = BlockPhysicsQueue.pack(centerLocation.getBlockX(), centerLocation.getBlockY(), centerLocation.getBlockZ());
+        final QueuedExplosion explosion = new QueuedExplosion(worldId, key, centerLocation, cause, currentTick);
+
+        Map<Long, QueuedExplosion> positions = queued.get(worldId);
+        if (positions == null)
+        {
+            positions = new HashMap<Long, QueuedExplosion>();
+            queued.put(worldId, positions);
+        }
+        QueuedExplosion last = positions.get(key);
+        if (last == null)
+            positions.put(key, explosion);
+        else
+        {
+            while (last.next != null)
+                last = last.next;
+            last.next = explosion;
+        }
+        order.add(explosion);
+        queuedCount++;
+    }
+
+
+    /**
+     * Get the explosion that has been queued at the block of the given location and remove it from the queue
+     *
+     * @param location location of the EntityExplodeEvent
+     *
+     * @return the oldest explosion at that block, null if we didn't queue an explosion there
+     */
+    public QueuedExplosion takeExplosion(Location location)
+    {
+        if (queuedCount == 0)
+            return null;
+        dropStale();
+        final Map<Long, QueuedExplosion> positions = queued.get(location.getWorld().getUID());
+        if (positions == null)
+            return null;
+        final QueuedExplosion explosion = positions.get(BlockPhysicsQueue.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+        if (explosion != null)
+            remove(explosion);
+        return explosion;
     }
 
 
-    public Location getCenterLocation()
+    /**
+     * Get an entity for a source, for plugins which need an actual entity. Virtual sources get a hidden entity of
+     * their type at the location of the explosion, which is reused for further explosions at the same block.
+     *
+     * @param source source of the explosion
+     *
+     * @return the entity, null if none could be spawned
+     */
+    public Entity getEntity(ExplosionSource source)
     {
-        return centerLocation;
+        if (!source.isVirtual())
+            return source.getRealEntity();
+
+        final Location location = source.getLocation();
+        final UUID worldId = location.getWorld().getUID();
+        Map<EntityType, Entity> pool = hiddenEntities.get(worldId);
+        if (pool == null)
+        {
+            pool = new EnumMap<EntityType, Entity>(EntityType.class);
+            hiddenEntities.put(worldId, pool);
+        }
+        Entity entity = pool.get(source.getType());
+        //removed entities can't be teleported, plugins look at where it is to find the claim or region
+        if (entity == null || !isSameBlock(entity.getLocation(), location))
+        {
+            final Class<? extends Entity> entityClass = source.getType().getEntityClass();
+            if (entityClass == null)
+                return null;
+            entity = location.getWorld().spawn(location, entityClass);
+            if (entity == null)
+                return null;
+            entity.remove();
+            pool.put(source.getType(), entity);
+        }
+        return entity;
     }
 
 
-    public Entity getExplosionCause()
+    private static boolean isSameBlock(Location a, Location b)
     {
-        return explosionCause;
+        return a.getBlockX() == b.getBlockX() && a.getBlockY() == b.getBlockY() && a.getBlockZ() == b.getBlockZ();
     }
 
 
-    /** Clear the current explosion from the queue. */
+    /** Clear all explosions from the queue. */
     public void clearQueue()
     {
-        this.explosionCause = null;
-        this.centerLocation = null;
+        queued.clear();
+        order.clear();
+        queuedCount = 0;
     }
 
 
     public boolean queueEmpty()
     {
-        return explosionCause == null && centerLocation == null;
+        return queuedCount == 0;
+    }
+
+
+    /**
+     * Remove explosions that have been matched or haven't been matched in time from the front of the queue
+     */
+    private void dropStale()
+    {
+        QueuedExplosion oldest;
+        while ((oldest = order.peek()) != null && (oldest.removed || currentTick - oldest.tick > MAX_AGE))
+            remove(order.poll());
+    }
+
+
+    private void remove(QueuedExplosion explosion)
+    {
+        if (explosion == null || explosion.removed)
+            return;
+        explosion.removed = true;
+        queuedCount--;
+
+        final Map<Long, QueuedExplosion> positions = queued.get(explosion.worldId);
+        final QueuedExplosion first = positions.get(explosion.key);
+        if (first == explosion)
+        {
+            if (explosion.next != null)
+                positions.put(explosion.key, explosion.next);
+            else
+            {
+                positions.remove(explosion.key);
+                if (positions.isEmpty())
+                    queued.remove(explosion.worldId);
+            }
+        } else
+        {
+            QueuedExplosion previous = first;
+            while (previous.next != explosion)
+                previous = previous.next;
+            previous.next = explosion.next;
+        }
     }
 
 
     @Override
     public void starting()
     {
+        super.starting();
+        tickTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                currentTick++;
+            }
+        }, 1L, 1L);
     }
 
 
     @Override
     public void closing()
     {
-        explosionCause = null;
-        centerLocation = null;
+        super.closing();
+        if (tickTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(tickTaskId);
+        tickTaskId = -1;
+        clearQueue();
+        hiddenEntities.clear();
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event)
+    {
+        hiddenEntities.remove(event.getWorld().getUID());
+    }
+
+
+    /**
+     * An explosion waiting for its event
+     */
+    public static class QueuedExplosion
+    {
+        private final UUID worldId;
+        private final long key;
+        private final Location location;
+        private final ExplosionSource cause;
+        private final long tick;
+
+        /**
+         * Next explosion queued at the same block
+         */
+        private QueuedExplosion next;
+
+        private boolean removed = false;
+
+
+        private QueuedExplosion(UUID worldId, long key, Location location, ExplosionSource cause, long tick)
+        {
+            this.worldId = worldId;
+            this.key = key;
+            this.location = location;
+            this.cause = cause;
+            this.tick = tick;
+        }
+
+
+        public Location getCenterLocation()
+        {
+            return location;
+        }
+
+
+        public ExplosionSource getExplosionCause()
+        {
+            return cause;
+        }
     }
 }
@@ -0,0 +1,96 @@
+package com.extrahardmode.module;
+
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+
+/**
+ * What caused one of our explosions.
+ * <p/>
+ * Explosions caused by an actual entity (tnt, creepers) carry that entity. Explosions without one, like a blaze
+ * exploding on death, only carry the type of entity they are attributed to, so no entity has to be spawned for them.
+ * Plugins which insist on an entity get a hidden one from {@link ExplosionCompatStorage#getEntity(ExplosionSource)}.
+ *
+ * @author Diemex
+ */
+public final class ExplosionSource
+{
+    /**
+     * Type the explosion is attributed to
+     */
+    private final EntityType type;
+
+    /**
+     * Entity that caused the explosion, null for virtual sources
+     */
+    private final Entity entity;
+
+    /**
+     * Where the source was when the explosion happened
+     */
+    private final Location location;
+
+
+    private ExplosionSource(EntityType type, Entity entity, Location location)
+    {
+        this.type = type;
+        this.entity = entity;
+        this.location = location;
+    }
+
+
+    /**
+     * An explosion caused by an entity
+     *
+     * @param entity cause of the explosion, can be null
+     *
+     * @return the source or null if there is no entity
+     */
+    public static ExplosionSource of(Entity entity)
+    {
+        return entity != null ? new ExplosionSource(entity.getType(), entity, entity.getLocation()) : null;
+    }
+
+
+    /**
+     * An explosion without an entity which is attributed to the given type
+     *
+     * @param type     type of entity protection and logging plugins should see
+     * @param location where the explosion happens
+     */
+    public static ExplosionSource virtual(EntityType type, Location location)
+    {
+        Validate.notNull(type, "No type to attribute the explosion to");
+        Validate.notNull(location, "No location provided");
+        return new ExplosionSource(type, null, location.clone());
+    }
+
+
+    public EntityType getType()
+    {
+        return type;
+    }
+
+
+    /**
+     * @return the entity that caused the explosion, null if the source is virtual
+     */
+    public Entity getRealEntity()
+    {
+        return entity;
+    }
+
+
+    public boolean isVirtual()
+    {
+        return entity == null;
+    }
+
+
+    public Location getLocation()
+    {
+        return location;
+    }
+}
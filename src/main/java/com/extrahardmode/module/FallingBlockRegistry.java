@@ -0,0 +1,323 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.module;
+
+
+import com.extrahardmode.ExtraHardMode;
+import com.extrahardmode.config.RootConfig;
+import com.extrahardmode.config.RootNode;
+import com.extrahardmode.service.EHMModule;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.FallingBlock;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps track of all FallingBlocks spawned by this plugin and limits how many of them can exist at once.
+ * <p/>
+ * Spawning goes through {@link #spawn}, which returns null if a limit has been reached. The caller is then expected to
+ * place or drop the block directly.
+ */
+public class FallingBlockRegistry extends EHMModule
+{
+    /**
+     * How often stuck and dead FallingBlocks get cleaned up
+     */
+    private static final long SWEEP_INTERVAL = 20L;
+
+    private RootConfig CFG;
+
+    /**
+     * UUID of the entity -> info about it
+     */
+    private final Map<UUID, TrackedBlock> tracked = new HashMap<UUID, TrackedBlock>();
+
+    /**
+     * World name -> chunk key -> FallingBlocks which started in that chunk
+     */
+    private final Map<String, Map<Long, Integer>> chunkCounts = new HashMap<String, Map<Long, Integer>>();
+
+    /**
+     * Ticks since the module has been started, incremented by the sweep task
+     */
+    private long tick = 0;
+
+    /**
+     * Tick of the last sweep, blocks that didn't fit can only trigger one extra sweep per tick
+     */
+    private long lastSweepTick = -1;
+
+    /**
+     * Id of the sweep task
+     */
+    private int sweepTaskId = -1;
+
+    /**
+     * Statistics
+     */
+    private long spawnedCount = 0, cappedCount = 0, expiredCount = 0;
+
+
+    /**
+     * Constructor.
+     *
+     * @param plugin - plugin instance.
+     */
+    public FallingBlockRegistry(ExtraHardMode plugin)
+    {
+        super(plugin);
+    }
+
+
+    @Override
+    public void starting()
+    {
+        CFG = plugin.getModuleForClass(RootConfig.class);
+        sweepTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                tick++;
+                if (tick % SWEEP_INTERVAL == 0)
+                    sweep();
+            }
+        }, 1L, 1L);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        if (sweepTaskId != -1)
+            plugin.getServer().getScheduler().cancelTask(sweepTaskId);
+        sweepTaskId = -1;
+        tracked.clear();
+        chunkCounts.clear();
+    }
+
+
+    /**
+     * Spawn a FallingBlock if the limits of the world allow it
+     *
+     * @param location where to spawn the block
+     * @param typeId   id of the block
+     * @param data     block data
+     *
+     * @return the spawned FallingBlock or null if a limit has been reached
+     */
+    public FallingBlock spawn(Location location, int typeId, byte data)
+    {
+        final World world = location.getWorld();
+        final int maxTotal = CFG.getInt(RootNode.FALLING_BLOCKS_MAX_TOTAL, world.getName());
+        final int maxPerChunk = CFG.getInt(RootNode.FALLING_BLOCKS_MAX_PER_CHUNK, world.getName());
+        final long chunk = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+
+        if (isFull(world.getName(), chunk, maxTotal, maxPerChunk))
+        {
+            //Some of the blocks might have landed since the last sweep
+            if (lastSweepTick != tick)
+                sweep();
+            if (isFull(world.getName(), chunk, maxTotal, maxPerChunk))
+            {
+                cappedCount++;
+                return null;
+            }
+        }
+
+        FallingBlock fallingBlock = world.spawnFallingBlock(location, typeId, data);
+        track(fallingBlock, location, chunk);
+        spawnedCount++;
+        return fallingBlock;
+    }
+
+
+    /**
+     * @see #spawn(Location, int, byte)
+     */
+    public FallingBlock spawn(Location location, Material material, byte data)
+    {
+        return spawn(location, material.getId(), data);
+    }
+
+
+    private boolean isFull(String world, long chunk, int maxTotal, int maxPerChunk)
+    {
+        if (maxTotal > 0 && tracked.size() >= maxTotal)
+            return true;
+        if (maxPerChunk > 0)
+        {
+            Map<Long, Integer> counts = chunkCounts.get(world);
+            Integer count = counts != null ? counts.get(chunk) : null;
+            return count != null && count >= maxPerChunk;
+        }
+        return false;
+    }
+
+
+    private void track(FallingBlock fallingBlock, Location origin, long chunk)
+    {
+        final String world = origin.getWorld().getName();
+        tracked.put(fallingBlock.getUniqueId(), new TrackedBlock(fallingBlock, tick, origin.clone(), world, chunk));
+        Map<Long, Integer> counts = chunkCounts.get(world);
+        if (counts == null)
+        {
+            counts = new HashMap<Long, Integer>();
+            chunkCounts.put(world, counts);
+        }
+        Integer count = counts.get(chunk);
+        counts.put(chunk, count != null ? count + 1 : 1);
+    }
+
+
+    /**
+     * Forget about blocks that landed or got removed and remove blocks that have been falling for too long
+     */
+    private void sweep()
+    {
+        lastSweepTick = tick;
+        //world name -> max age
+        final Map<String, Integer> maxAges = new HashMap<String, Integer>(4);
+        Iterator<TrackedBlock> iter = tracked.values().iterator();
+        while (iter.hasNext())
+        {
+            TrackedBlock block = iter.next();
+            Integer maxAge = maxAges.get(block.world);
+            if (maxAge == null)
+            {
+                maxAge = CFG.getInt(RootNode.FALLING_BLOCKS_MAX_AGE, block.world);
+                maxAges.put(block.world, maxAge);
+            }
+            if (block.entity.isValid() && maxAge > 0 && tick - block.spawnTick > maxAge)
+            {
+                //place or drop the block instead of letting it vanish
+                plugin.getModuleForClass(BlockModule.class).settle(block.entity);
+                block.entity.remove();
+                expiredCount++;
+            }
+            if (!block.entity.isValid())
+            {
+                iter.remove();
+                untrackChunk(block);
+            }
+        }
+    }
+
+
+    private void untrackChunk(TrackedBlock block)
+    {
+        Map<Long, Integer> counts = chunkCounts.get(block.world);
+        if (counts == null)
+            return;
+        Integer count = counts.get(block.chunk);
+        if (count == null || count <= 1)
+            counts.remove(block.chunk);
+        else
+            counts.put(block.chunk, count - 1);
+        if (counts.isEmpty())
+            chunkCounts.remove(block.world);
+    }
+
+
+    /**
+     * Get where a tracked FallingBlock started falling
+     *
+     * @param id UUID of the FallingBlock
+     *
+     * @return location or null if the block isn't tracked
+     */
+    public Location getOrigin(UUID id)
+    {
+        TrackedBlock block = tracked.get(id);
+        return block != null ? block.origin.clone() : null;
+    }
+
+
+    /**
+     * @return how many FallingBlocks spawned by this plugin are currently in the air
+     */
+    public int getLiveCount()
+    {
+        return tracked.size();
+    }
+
+
+    /**
+     * @return how many FallingBlocks have been spawned in total
+     */
+    public long getSpawnedCount()
+    {
+        return spawnedCount;
+    }
+
+
+    /**
+     * @return how many FallingBlocks haven't been spawned because a limit was reached
+     */
+    public long getCappedCount()
+    {
+        return cappedCount;
+    }
+
+
+    /**
+     * @return how many FallingBlocks got removed because they were stuck
+     */
+    public long getExpiredCount()
+    {
+        return expiredCount;
+    }
+
+
+    private static long chunkKey(int cx, int cz)
+    {
+        return (long) cx << 32 | cz & 0xFFFFFFFFL;
+    }
+
+
+    /**
+     * A FallingBlock spawned by this plugin
+     */
+    private static class TrackedBlock
+    {
+        private final FallingBlock entity;
+        private final long spawnTick;
+        private final Location origin;
+        private final String world;
+        private final long chunk;
+
+
+        private TrackedBlock(FallingBlock entity, long spawnTick, Location origin, String world, long chunk)
+        {
+            this.entity = entity;
+            this.spawnTick = spawnTick;
+            this.origin = origin;
+            this.world = world;
+            this.chunk = chunk;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.extrahardmode.module;
+
+
+import com.extrahardmode.ExtraHardMode;
+import com.extrahardmode.service.ListenerModule;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Predicts where a FallingBlock will land without scanning down block by block.
+ * <p/>
+ * For every column that has been queried the solid blocks are cached as a bitset, so finding the first solid block
+ * below a position is a few bit operations. Columns are invalidated when blocks in them change. As not every change
+ * fires an event, the two blocks a prediction is based on are checked against the world and the column is rebuilt if
+ * they don't match.
+ */
+public class LandingPredictor extends ListenerModule
+{
+    /**
+     * Which block ids are solid, FallingBlocks land on top of these
+     */
+    private static final boolean[] SOLID = new boolean[4096];
+
+    static
+    {
+        for (Material material : Material.values())
+            if (material.isBlock() && material.getId() >= 0 && material.getId() < SOLID.length)
+                SOLID[material.getId()] = material.isSolid();
+    }
+
+    /**
+     * World name -> chunk key -> 256 columns, each a bitset of the solid blocks in the column or null if not cached
+     */
+    private final Map<String, Map<Long, long[][]>> columns = new HashMap<String, Map<Long, long[][]>>();
+
+
+    public LandingPredictor(ExtraHardMode plugin)
+    {
+        super(plugin);
+    }
+
+
+    @Override
+    public void closing()
+    {
+        super.closing();
+        columns.clear();
+    }
+
+
+    /**
+     * Get the y a block at this position comes to rest at when it falls
+     *
+     * @param block block that falls
+     *
+     * @return y of the landing spot, -1 if the block falls into the void
+     */
+    public int getLandingY(Block block)
+    {
+        final World world = block.getWorld();
+        final int x = block.getX(), z = block.getZ();
+        int landingY = firstSolidBelow(getColumn(world, x, z, false), block.getY()) + 1;
+
+        //Verify the prediction, some changes don't fire events
+        if (landingY == 0 || !isSolid(world.getBlockTypeIdAt(x, landingY - 1, z)) || (landingY < block.getY() && isSolid(world.getBlockTypeIdAt(x, landingY, z))))
+            landingY = firstSolidBelow(getColumn(world, x, z, true), block.getY()) + 1;
+        return landingY > 0 ? landingY : -1;
+    }
+
+
+    /**
+     * Get the block a FallingBlock from this position will land in
+     *
+     * @param block block that falls
+     *
+     * @return the block where it comes to rest, null if it falls into the void
+     */
+    public Block getLandingBlock(Block block)
+    {
+        final int landingY = getLandingY(block);
+        return landingY >= 0 ? block.getWorld().getBlockAt(block.getX(), landingY, block.getZ()) : null;
+    }
+
+
+    /**
+     * Forget the cached solid blocks of the column of this block
+     */
+    public void invalidate(Block block)
+    {
+        invalidate(block.getWorld(), block.getX(), block.getZ());
+    }
+
+
+    public void invalidate(World world, int x, int z)
+    {
+        Map<Long, long[][]> chunks = columns.get(world.getName());
+        if (chunks == null)
+            return;
+        long[][] chunk = chunks.get(chunkKey(x >> 4, z >> 4));
+        if (chunk != null)
+            chunk[(x & 15) << 4 | (z & 15)] = null;
+    }
+
+
+    public static boolean isSolid(int typeId)
+    {
+        return typeId >= 0 && typeId < SOLID.length && SOLID[typeId];
+    }
+
+
+    /**
+     * @return y of the highest solid block below y, -1 if there is none
+     */
+    private static int firstSolidBelow(long[] column, int y)
+    {
+        for (int word = Math.min(y - 1, 255) >> 6; word >= 0 && y > 0; word--)
+        {
+            long bits = column[word];
+            //only look at blocks below y
+            if (word == (y - 1) >> 6 && ((y - 1) & 63) != 63)
+                bits &= (1L << (((y - 1) & 63) + 1)) - 1;
+            if (bits != 0)
+                return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+        }
+        return -1;
+    }
+
+
+    private long[] getColumn(World world, int x, int z, boolean rebuild)
+    {
+        Map<Long, long[][]> chunks = columns.get(world.getName());
+        if (chunks == null)
+        {
+            chunks = new HashMap<Long, long[][]>();
+            columns.put(world.getName(), chunks);
+        }
+        final long key = chunkKey(x >> 4, z >> 4);
+        long[][] chunk = chunks.get(key);
+        if (chunk == null)
+        {
+            chunk = new long[256][];
+            chunks.put(key, chunk);
+        }
+        final int index = (x & 15) << 4 | (z & 15);
+        if (chunk[index] == null || rebuild)
+        {
+            long[] column = new long[4];
+            for (int y = Math.min(world.getMaxHeight(), 256) - 1; y >= 0; y--)
+                if (isSolid(world.getBlockTypeIdAt(x, y, z)))
+                    column[y >> 6] |= 1L << (y & 63);
+            chunk[index] = column;
+        }
+        return chunk[index];
+    }
+
+
+    private static long chunkKey(int cx, int cz)
+    {
+        return (long) cx << 32 | cz & 0xFFFFFFFFL;
+    }
+
+
+    private void invalidate(List<Block> blocks)
+    {
+        for (Block block : blocks)
+            invalidate(block);
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockBreak(BlockBreakEvent event)
+    {
+        invalidate(event.getBlock());
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPlace(BlockPlaceEvent event)
+    {
+        invalidate(event.getBlock());
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockBurn(BlockBurnEvent event)
+    {
+        invalidate(event.getBlock());
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockFade(BlockFadeEvent event)
+    {
+        invalidate(event.getBlock());
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockForm(BlockFormEvent event)
+    {
+        invalidate(event.getBlock());
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onLeavesDecay(LeavesDecayEvent event)
+    {
+        invalidate(event.getBlock());
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onPistonExtend(BlockPistonExtendEvent event)
+    {
+        invalidate(event.getBlocks());
+        for (Block block : event.getBlocks())
+            invalidate(block.getRelative(event.getDirection()));
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onPistonRetract(BlockPistonRetractEvent event)
+    {
+        invalidate(event.getBlocks());
+        for (Block block : event.getBlocks())
+            invalidate(block.getRelative(event.getDirection()));
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event)
+    {
+        invalidate(event.getBlock());
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEntityExplode(EntityExplodeEvent event)
+    {
+        invalidate(event.blockList());
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockExplode(BlockExplodeEvent event)
+    {
+        invalidate(event.blockList());
+    }
+
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onStructureGrow(StructureGrowEvent event)
+    {
+        for (BlockState state : event.getBlocks())
+            invalidate(state.getWorld(), state.getX(), state.getZ());
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event)
+    {
+        Map<Long, long[][]> chunks = columns.get(event.getWorld().getName());
+        if (chunks != null)
+            chunks.remove(chunkKey(event.getChunk().getX(), event.getChunk().getZ()));
+    }
+}
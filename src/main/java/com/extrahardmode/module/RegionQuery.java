@@ -0,0 +1,253 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.extrahardmode.module;
+
+
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.Collection;
+
+/**
+ * Visit the blocks in an area without creating a Block object for every position.
+ * <p/>
+ * Type ids are read straight from the world. Block data is only read for a {@link BlockDataVisitor}, for non air
+ * blocks through the Chunk of the current column, which is only looked up once per column.
+ */
+public final class RegionQuery
+{
+    private RegionQuery()
+    {
+    }
+
+
+    /**
+     * Shape of the area around the center
+     */
+    public enum Shape
+    {
+        /**
+         * All blocks within the radius on every axis
+         */
+        CUBOID,
+        /**
+         * Blocks within the radius on the horizontal plane, the height is not limited by the radius
+         */
+        CYLINDER,
+        /**
+         * Blocks within the radius in all three dimensions
+         */
+        SPHERE
+    }
+
+
+    /**
+     * Gets called for every block of a query
+     */
+    public interface BlockVisitor
+    {
+        /**
+         * @param x      block x
+         * @param y      block y
+         * @param z      block z
+         * @param typeId id of the block
+         *
+         * @return true to continue, false to stop the query
+         */
+        boolean visit(int x, int y, int z, int typeId);
+    }
+
+
+    /**
+     * Gets called for every block of a query, with the data of the block
+     */
+    public interface BlockDataVisitor
+    {
+        /**
+         * @param x      block x
+         * @param y      block y
+         * @param z      block z
+         * @param typeId id of the block
+         * @param data   data of the block
+         *
+         * @return true to continue, false to stop the query
+         */
+        boolean visit(int x, int y, int z, int typeId, byte data);
+    }
+
+
+    /**
+     * Visit all blocks in an area around a center, column by column from the bottom up
+     *
+     * @param world   world to look in
+     * @param centerX center of the area
+     * @param centerY center of the area
+     * @param centerZ center of the area
+     * @param radius  horizontal radius, for spheres also the vertical radius
+     * @param minDy   lowest layer relative to the center
+     * @param maxDy   highest layer relative to the center
+     * @param shape   shape of the area
+     * @param visitor gets called for every block
+     *
+     * @return false if the visitor stopped the query early
+     */
+    public static boolean scan(World world, int centerX, int centerY, int centerZ, int radius, int minDy, int maxDy, Shape shape, BlockVisitor visitor)
+    {
+        return scan(world, centerX, centerY, centerZ, radius, minDy, maxDy, shape, visitor, null);
+    }
+
+
+    /**
+     * Visit all blocks in an area around a center with their data, column by column from the bottom up
+     *
+     * @see #scan(World, int, int, int, int, int, int, Shape, BlockVisitor)
+     */
+    public static boolean scan(World world, int centerX, int centerY, int centerZ, int radius, int minDy, int maxDy, Shape shape, BlockDataVisitor visitor)
+    {
+        return scan(world, centerX, centerY, centerZ, radius, minDy, maxDy, shape, null, visitor);
+    }
+
+
+    private static boolean scan(World world, int centerX, int centerY, int centerZ, int radius, int minDy, int maxDy, Shape shape,
+                                BlockVisitor visitor, BlockDataVisitor dataVisitor)
+    {
+        final int radiusSquared = radius * radius;
+        final int maxHeight = world.getMaxHeight();
+        for (int dx = -radius; dx <= radius; dx++)
+        {
+            for (int dz = -radius; dz <= radius; dz++)
+            {
+                final int horizontal = dx * dx + dz * dz;
+                if (shape != Shape.CUBOID && horizontal > radiusSquared)
+                    continue;
+                final int x = centerX + dx, z = centerZ + dz;
+                Chunk chunk = null;
+                for (int dy = minDy; dy <= maxDy; dy++)
+                {
+                    final int y = centerY + dy;
+                    if (y < 0 || y >= maxHeight || (shape == Shape.SPHERE && horizontal + dy * dy > radiusSquared))
+                        continue;
+                    final int typeId = world.getBlockTypeIdAt(x, y, z);
+                    if (dataVisitor == null)
+                    {
+                        if (!visitor.visit(x, y, z, typeId))
+                            return false;
+                        continue;
+                    }
+                    byte data = 0;
+                    if (typeId != 0)
+                    {
+                        if (chunk == null)
+                            chunk = world.getChunkAt(x >> 4, z >> 4);
+                        data = chunk.getBlock(x & 15, y, z & 15).getData();
+                    }
+                    if (!dataVisitor.visit(x, y, z, typeId, data))
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Visit the blocks of a column from the top down
+     *
+     * @param world   world to look in
+     * @param x       x of the column
+     * @param z       z of the column
+     * @param fromY   highest block to visit
+     * @param toY     lowest block to visit
+     * @param visitor gets called for every block
+     *
+     * @return false if the visitor stopped the query early
+     */
+    public static boolean scanDown(World world, int x, int z, int fromY, int toY, BlockVisitor visitor)
+    {
+        for (int y = Math.min(fromY, world.getMaxHeight() - 1); y >= Math.max(0, toY); y--)
+            if (!visitor.visit(x, y, z, world.getBlockTypeIdAt(x, y, z)))
+                return false;
+        return true;
+    }
+
+
+    /**
+     * Visit the blocks of a column with their data from the top down
+     *
+     * @see #scanDown(World, int, int, int, int, BlockVisitor)
+     */
+    public static boolean scanDown(World world, int x, int z, int fromY, int toY, BlockDataVisitor visitor)
+    {
+        Chunk chunk = null;
+        for (int y = Math.min(fromY, world.getMaxHeight() - 1); y >= Math.max(0, toY); y--)
+        {
+            final int typeId = world.getBlockTypeIdAt(x, y, z);
+            byte data = 0;
+            if (typeId != 0)
+            {
+                if (chunk == null)
+                    chunk = world.getChunkAt(x >> 4, z >> 4);
+                data = chunk.getBlock(x & 15, y, z & 15).getData();
+            }
+            if (!visitor.visit(x, y, z, typeId, data))
+                return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Collect all blocks of a type in an area
+     *
+     * @param world   world to look in
+     * @param centerX center of the area
+     * @param centerY center of the area
+     * @param centerZ center of the area
+     * @param radius  horizontal radius, for spheres also the vertical radius
+     * @param minDy   lowest layer relative to the center
+     * @param maxDy   highest layer relative to the center
+     * @param shape   shape of the area
+     * @param type    type of the blocks to collect
+     * @param out     collection to add the blocks to, can be reused between queries
+     *
+     * @return out
+     */
+    public static <T extends Collection<Block>> T collect(final World world, int centerX, int centerY, int centerZ, int radius, int minDy, int maxDy,
+                                                         Shape shape, Material type, final T out)
+    {
+        final int typeId = type.getId();
+        scan(world, centerX, centerY, centerZ, radius, minDy, maxDy, shape, new BlockVisitor()
+        {
+            @Override
+            public boolean visit(int x, int y, int z, int id)
+            {
+                if (id == typeId)
+                    out.add(world.getBlockAt(x, y, z));
+                return true;
+            }
+        });
+        return out;
+    }
+}
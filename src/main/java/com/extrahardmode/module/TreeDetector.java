@@ -0,0 +1,171 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.extrahardmode.module;
+
+
+import com.extrahardmode.task.BlockPhysicsQueue;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.*;
+
+/**
+ * Finds the logs and leaves that make up a tree with a bounded flood fill.
+ * <p/>
+ * Logs spread to all 26 surrounding blocks, leaves only spread to other leaves and only a few blocks away from the
+ * nearest log. That way the leaves of neighboring trees are found, but not their logs.
+ */
+public final class TreeDetector
+{
+    /**
+     * Max blocks to visit for one tree
+     */
+    private static final int MAX_BLOCKS = 2048;
+
+    /**
+     * How far from the start the search may spread horizontally
+     */
+    private static final int MAX_RADIUS = 8;
+
+    /**
+     * How far above the start the search may spread
+     */
+    private static final int MAX_HEIGHT = 40;
+
+    /**
+     * How many leaves away from the nearest log leaves are still searched
+     */
+    private static final int MAX_LEAF_DEPTH = 2;
+
+    /**
+     * Leaves placed by players have this bit set and don't decay
+     */
+    private static final int NO_DECAY_BIT = 0x4;
+
+
+    private TreeDetector()
+    {
+    }
+
+
+    /**
+     * Find the tree a log belongs to
+     *
+     * @param start log to start from, is part of the result
+     *
+     * @return the tree
+     */
+    public static Tree detect(Block start)
+    {
+        final World world = start.getWorld();
+        final Tree tree = new Tree();
+        final Set<Long> visited = new HashSet<Long>();
+        //x, y, z, leaf depth (0 = log)
+        final ArrayDeque<int[]> open = new ArrayDeque<int[]>();
+        open.add(new int[]{start.getX(), start.getY(), start.getZ(), 0});
+        visited.add(BlockPhysicsQueue.pack(start.getX(), start.getY(), start.getZ()));
+
+        int[] pos;
+        while ((pos = open.poll()) != null && visited.size() < MAX_BLOCKS)
+        {
+            final Block block = world.getBlockAt(pos[0], pos[1], pos[2]);
+            final Material type = block.getType();
+            final boolean isLog = isLog(type);
+            if (isLog)
+                tree.logs.add(block);
+            else if (isLeaves(type))
+            {
+                if ((block.getData() & NO_DECAY_BIT) == 0)
+                    tree.naturalLeaves++;
+                if (pos[3] >= MAX_LEAF_DEPTH)
+                    continue;
+            } else
+                continue;
+
+            for (int dx = -1; dx <= 1; dx++)
+                for (int dy = -1; dy <= 1; dy++)
+                    for (int dz = -1; dz <= 1; dz++)
+                    {
+                        //leaves only spread to their direct neighbors
+                        if ((dx == 0 && dy == 0 && dz == 0) || (!isLog && Math.abs(dx) + Math.abs(dy) + Math.abs(dz) != 1))
+                            continue;
+                        final int x = pos[0] + dx, y = pos[1] + dy, z = pos[2] + dz;
+                        if (Math.abs(x - start.getX()) > MAX_RADIUS || Math.abs(z - start.getZ()) > MAX_RADIUS
+                                || y < start.getY() - 1 || y > start.getY() + MAX_HEIGHT || y < 0 || y > 255)
+                            continue;
+                        if (!visited.add(BlockPhysicsQueue.pack(x, y, z)))
+                            continue;
+                        //logs only spread into logs and leaves, leaves only into leaves
+                        final Material neighbor = world.getBlockAt(x, y, z).getType();
+                        if (isLeaves(neighbor))
+                            open.add(new int[]{x, y, z, isLog ? 1 : pos[3] + 1});
+                        else if (isLog && isLog(neighbor))
+                            open.add(new int[]{x, y, z, 0});
+                    }
+        }
+        return tree;
+    }
+
+
+    public static boolean isLog(Material type)
+    {
+        return type == Material.LOG || type == Material.LOG_2;
+    }
+
+
+    public static boolean isLeaves(Material type)
+    {
+        return type == Material.LEAVES || type == Material.LEAVES_2;
+    }
+
+
+    /**
+     * Logs of a tree and if it has natural leaves
+     */
+    public static class Tree
+    {
+        private final List<Block> logs = new ArrayList<Block>();
+        private int naturalLeaves = 0;
+
+
+        /**
+         * @return all logs of this tree, including the one the search started from
+         */
+        public List<Block> getLogs()
+        {
+            return logs;
+        }
+
+
+        /**
+         * A tree is natural if it has leaves that haven't been placed by a player
+         *
+         * @return if this is a natural tree
+         */
+        public boolean isNatural()
+        {
+            return naturalLeaves > 0;
+        }
+    }
+}
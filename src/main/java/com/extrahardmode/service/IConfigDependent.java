@@ -0,0 +1,43 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.service;
+
+
+import com.extrahardmode.service.config.ConfigNode;
+
+import java.util.Set;
+
+/**
+ * A module which holds state derived from the config and has to be restarted if certain nodes change on a reload.
+ * Modules which only read the config when they need a value don't need this.
+ */
+public interface IConfigDependent
+{
+    /**
+     * Does this module need to be restarted because of changed config values
+     *
+     * @param changed nodes that have changed in at least one world
+     *
+     * @return true if the module should be restarted
+     */
+    public boolean isAffectedBy(Set<ConfigNode> changed);
+}
@@ -4,6 +4,10 @@ package com.extrahardmode.service;
 import java.io.*;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 import com.google.common.io.Files;
 
@@ -14,6 +18,12 @@ import com.google.common.io.Files;
  */
 public class IoHelper
 {
+    /**
+     * Charset all our files are written in
+     */
+    public static final Charset UTF8 = Charset.forName("UTF-8");
+
+
     /**
      * Copy contents of one File to another
      *
@@ -103,4 +113,88 @@ public class IoHelper
             e.printStackTrace();
         }
     }
+
+
+    /**
+     * Write the content to the file, but only if it differs from what is already in the file. The content is first
+     * written to a temporary file which then replaces the original, so the file is never left half written.
+     *
+     * @param file    file to write to
+     * @param content content to write
+     *
+     * @return true if the file has been written, false if it already had the content
+     *
+     * @throws IOException if writing failed
+     */
+    public static boolean writeIfChanged(File file, String content) throws IOException
+    {
+        byte[] bytes = content.getBytes(UTF8);
+        if (file.exists() && file.length() == bytes.length && Arrays.equals(md5(file), md5(bytes)))
+            return false;
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        File temp = new File(parent, file.getName() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try
+        {
+            out.write(bytes);
+            out.getFD().sync();
+        } finally
+        {
+            out.close();
+        }
+        //renameTo doesn't overwrite on all platforms
+        if (!temp.renameTo(file))
+        {
+            file.delete();
+            Files.move(temp, file);
+        }
+        return true;
+    }
+
+
+    public static byte[] md5(byte[] bytes)
+    {
+        MessageDigest digest = md5Digest();
+        return digest.digest(bytes);
+    }
+
+
+    /**
+     * Calculate the md5 hash of the content of a file
+     *
+     * @param file file to hash
+     *
+     * @return 16 bytes md5 hash
+     *
+     * @throws IOException if the file couldn't be read
+     */
+    public static byte[] md5(File file) throws IOException
+    {
+        MessageDigest digest = md5Digest();
+        DigestInputStream in = new DigestInputStream(new BufferedInputStream(new FileInputStream(file)), digest);
+        try
+        {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) ;
+        } finally
+        {
+            in.close();
+        }
+        return digest.digest();
+    }
+
+
+    private static MessageDigest md5Digest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("MD5 is required to be supported by every jvm", e);
+        }
+    }
 }
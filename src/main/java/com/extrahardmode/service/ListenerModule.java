@@ -23,27 +23,159 @@ package com.extrahardmode.service;
 
 
 import com.extrahardmode.ExtraHardMode;
-import org.bukkit.event.HandlerList;
-import org.bukkit.event.Listener;
+import com.extrahardmode.config.RootConfig;
+import com.extrahardmode.service.config.ConfigNode;
+import org.bukkit.event.*;
+import org.bukkit.plugin.EventExecutor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
 
 /**
  * @author Diemex
  */
-public class ListenerModule implements IModule, Listener
+public class ListenerModule implements IModule, IConfigDependent, Listener
 {
     protected final ExtraHardMode plugin;
 
+    /**
+     * Nodes that enable this module, if none of them is active in any world the listeners won't be registered
+     */
+    private final ConfigNode[] gates;
+
 
     public ListenerModule(ExtraHardMode plugin)
+    {
+        this(plugin, new ConfigNode[0]);
+    }
+
+
+    /**
+     * Constructor for modules which are only needed if a feature is enabled
+     *
+     * @param plugin owning plugin
+     * @param gates  nodes that enable the feature(s) of this module, empty to always register
+     */
+    protected ListenerModule(ExtraHardMode plugin, ConfigNode... gates)
     {
         this.plugin = plugin;
+        this.gates = gates;
     }
 
 
+    /**
+     * Registers the event handlers of this module. Handlers annotated with a {@link HandlerGate} are only registered if
+     * one of their nodes is active in any world.
+     */
     @Override
     public void starting()
     {
-        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        if (!isActive())
+            return;
+        final RootConfig CFG = plugin.getModuleForClass(RootConfig.class);
+        for (final Method method : getHandlers())
+        {
+            final HandlerGate gate = method.getAnnotation(HandlerGate.class);
+            if (gate != null && CFG != null && !isAnyActive(CFG, gate.value()))
+                continue;
+            final EventHandler handler = method.getAnnotation(EventHandler.class);
+            final Class<? extends Event> eventClass = method.getParameterTypes()[0].asSubclass(Event.class);
+            method.setAccessible(true);
+            plugin.getServer().getPluginManager().registerEvent(eventClass, this, handler.priority(), new EventExecutor()
+            {
+                @Override
+                public void execute(Listener listener, Event event) throws EventException
+                {
+                    //handlers of a superclass of the event get called for subclasses of other events as well
+                    if (!eventClass.isAssignableFrom(event.getClass()))
+                        return;
+                    try
+                    {
+                        method.invoke(listener, event);
+                    } catch (InvocationTargetException e)
+                    {
+                        throw new EventException(e.getCause());
+                    } catch (Throwable t)
+                    {
+                        throw new EventException(t);
+                    }
+                }
+            }, plugin, handler.ignoreCancelled());
+        }
+    }
+
+
+    /**
+     * Get the methods of this module which handle events, the same methods Bukkit would register
+     *
+     * @return public and declared methods annotated with {@link EventHandler} that take one event
+     */
+    private Collection<Method> getHandlers()
+    {
+        final Set<Method> methods = new LinkedHashSet<Method>();
+        Collections.addAll(methods, getClass().getMethods());
+        Collections.addAll(methods, getClass().getDeclaredMethods());
+        final List<Method> handlers = new ArrayList<Method>();
+        for (Method method : methods)
+        {
+            if (method.getAnnotation(EventHandler.class) == null || method.isBridge() || method.isSynthetic())
+                continue;
+            final Class<?>[] params = method.getParameterTypes();
+            if (params.length != 1 || !Event.class.isAssignableFrom(params[0]))
+            {
+                plugin.getLogger().severe(getClass().getSimpleName() + " has an invalid event handler " + method.getName());
+                continue;
+            }
+            handlers.add(method);
+        }
+        return handlers;
+    }
+
+
+    private static boolean isAnyActive(RootConfig CFG, ConfigNode[] nodes)
+    {
+        for (ConfigNode node : nodes)
+            if (CFG.isActiveInAnyWorld(node))
+                return true;
+        return false;
+    }
+
+
+    /**
+     * Is at least one of the features of this module enabled in any world. Gets evaluated on every (re)start of the
+     * module, so a reload picks up changes.
+     *
+     * @return true if the listeners need to be registered
+     */
+    public boolean isActive()
+    {
+        if (gates.length == 0)
+            return true;
+        RootConfig CFG = plugin.getModuleForClass(RootConfig.class);
+        return CFG == null || isAnyActive(CFG, gates);
+    }
+
+
+    /**
+     * A module has to be restarted if one of its gates or the gates of its handlers changed, because that might change
+     * which handlers need to be registered
+     */
+    @Override
+    public boolean isAffectedBy(Set<ConfigNode> changed)
+    {
+        for (ConfigNode gate : gates)
+            if (changed.contains(gate))
+                return true;
+        for (Method method : getHandlers())
+        {
+            final HandlerGate gate = method.getAnnotation(HandlerGate.class);
+            if (gate != null)
+                for (ConfigNode node : gate.value())
+                    if (changed.contains(node))
+                        return true;
+        }
+        return false;
     }
 
 
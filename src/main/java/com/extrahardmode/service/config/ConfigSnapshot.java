@@ -0,0 +1,259 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.service.config;
+
+
+import com.extrahardmode.service.config.customtypes.BlockRelationsList;
+import com.extrahardmode.service.config.customtypes.BlockTypeList;
+import com.extrahardmode.service.config.customtypes.PotionEffectHolder;
+
+import java.util.*;
+
+/**
+ * An immutable, compiled copy of a {@link MultiWorldConfig}. The {@link MultiWorldConfig#ALL_WORLDS} inheritance and
+ * the fallback to disabled values are resolved once, every world gets flat arrays indexed by the ordinal of the node.
+ * <p/>
+ * Reading a value is an array access, no locking, no boxing and no table lookups.
+ *
+ * @author Diemex
+ */
+public final class ConfigSnapshot
+{
+    /**
+     * Nodes this snapshot has been compiled for, indexed by their ordinal
+     */
+    private final ConfigNode[] nodes;
+
+    /**
+     * Compiled values for all worlds which have been explicitly configured
+     */
+    private final Map<String, WorldValues> worlds;
+
+    /**
+     * Values used for worlds not present in the config, either the "@all" values or everything disabled
+     */
+    private final WorldValues fallback;
+
+
+    ConfigSnapshot(ConfigNode[] nodes, Map<String, WorldValues> worlds, WorldValues fallback)
+    {
+        this.nodes = nodes;
+        this.worlds = Collections.unmodifiableMap(new HashMap<String, WorldValues>(worlds));
+        this.fallback = fallback;
+    }
+
+
+    /**
+     * Get the index at which the values of this node are stored
+     *
+     * @param node node to look up
+     *
+     * @return index or -1 if this snapshot doesn't contain the node
+     */
+    public int indexOf(ConfigNode node)
+    {
+        if (node instanceof Enum)
+        {
+            int ordinal = ((Enum) node).ordinal();
+            if (ordinal < nodes.length && nodes[ordinal] == node)
+                return ordinal;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Get the compiled values for a world
+     *
+     * @param world name of the world
+     *
+     * @return values, never null
+     */
+    public WorldValues forWorld(String world)
+    {
+        WorldValues values = worlds.get(world);
+        return values != null ? values : fallback;
+    }
+
+
+    /**
+     * Get the compiled values of worlds not in the config
+     */
+    public WorldValues getFallback()
+    {
+        return fallback;
+    }
+
+
+    /**
+     * Get all the nodes this snapshot holds values for
+     */
+    public int size()
+    {
+        return nodes.length;
+    }
+
+
+    /**
+     * Get all nodes which have a different value in at least one world compared to a previous snapshot
+     *
+     * @param previous snapshot to compare against, can be null in which case all nodes have changed
+     *
+     * @return changed nodes
+     */
+    public Set<ConfigNode> changedNodes(ConfigSnapshot previous)
+    {
+        Set<ConfigNode> changed = new HashSet<ConfigNode>();
+        if (previous == null || previous.nodes.length != nodes.length)
+        {
+            Collections.addAll(changed, nodes);
+            return changed;
+        }
+        Set<String> allWorlds = new HashSet<String>(worlds.keySet());
+        allWorlds.addAll(previous.worlds.keySet());
+
+        for (int i = 0; i < nodes.length; i++)
+        {
+            if (nodes[i] != previous.nodes[i])
+            {
+                changed.add(nodes[i]);
+                continue;
+            }
+            boolean differs = !fallback.sameValueAt(previous.fallback, i);
+            for (Iterator<String> iter = allWorlds.iterator(); !differs && iter.hasNext(); )
+            {
+                String world = iter.next();
+                differs = !forWorld(world).sameValueAt(previous.forWorld(world), i);
+            }
+            if (differs)
+                changed.add(nodes[i]);
+        }
+        return changed;
+    }
+
+
+    /**
+     * Flat primitive arrays holding the values of one world. Only the array matching the VarType of a node is
+     * populated at the index of that node.
+     */
+    public static final class WorldValues
+    {
+        private final boolean[] booleans;
+        private final int[] ints;
+        private final double[] doubles;
+        private final Object[] objects;
+
+
+        WorldValues(int size)
+        {
+            booleans = new boolean[size];
+            ints = new int[size];
+            doubles = new double[size];
+            objects = new Object[size];
+        }
+
+
+        /**
+         * Compare the value at the given index with the value of another world
+         */
+        boolean sameValueAt(WorldValues other, int index)
+        {
+            if (booleans[index] != other.booleans[index] || ints[index] != other.ints[index] || doubles[index] != other.doubles[index])
+                return false;
+            Object obj = objects[index];
+            Object otherObj = other.objects[index];
+            return obj == null ? otherObj == null : obj.equals(otherObj);
+        }
+
+
+        void setBoolean(int index, boolean value)
+        {
+            booleans[index] = value;
+        }
+
+
+        void setInt(int index, int value)
+        {
+            ints[index] = value;
+        }
+
+
+        void setDouble(int index, double value)
+        {
+            doubles[index] = value;
+        }
+
+
+        void setObject(int index, Object value)
+        {
+            objects[index] = value;
+        }
+
+
+        public boolean getBoolean(int index)
+        {
+            return booleans[index];
+        }
+
+
+        public int getInt(int index)
+        {
+            return ints[index];
+        }
+
+
+        public double getDouble(int index)
+        {
+            return doubles[index];
+        }
+
+
+        public String getString(int index)
+        {
+            return (String) objects[index];
+        }
+
+
+        public List getStringList(int index)
+        {
+            return (List) objects[index];
+        }
+
+
+        public PotionEffectHolder getPotionEffect(int index)
+        {
+            return (PotionEffectHolder) objects[index];
+        }
+
+
+        public BlockTypeList getBlocktypeList(int index)
+        {
+            return (BlockTypeList) objects[index];
+        }
+
+
+        public BlockRelationsList getBlockRelationList(int index)
+        {
+            return (BlockRelationsList) objects[index];
+        }
+    }
+}
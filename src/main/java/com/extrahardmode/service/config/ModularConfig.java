@@ -61,6 +61,16 @@ public abstract class ModularConfig extends EHMModule
      */
     protected final Map<ConfigNode, Object> OPTIONS = new ConcurrentHashMap<ConfigNode, Object>();
 
+    /**
+     * Nodes which have been compiled, index is the ordinal of the node
+     */
+    private volatile ConfigNode[] compiledNodes;
+
+    /**
+     * Values of the compiled nodes, same index as the nodes
+     */
+    private volatile Object[] compiledOptions;
+
 
     /**
      * Constructor.
@@ -127,6 +137,53 @@ public abstract class ModularConfig extends EHMModule
     }
 
 
+    /**
+     * Copy the currently loaded options into an array indexed by the ordinal of the nodes. Call this after all options
+     * have been loaded, lookups of enum nodes will then skip the map.
+     *
+     * @param nodes all values of the enum, in ordinal order
+     */
+    protected void compile(final ConfigNode[] nodes)
+    {
+        Object[] options = new Object[nodes.length];
+        for (int i = 0; i < nodes.length; i++)
+            options[i] = OPTIONS.get(nodes[i]);
+        compiledOptions = options;
+        compiledNodes = nodes;
+    }
+
+
+    /**
+     * Drop the compiled options, lookups will use the map again.
+     */
+    protected void clearCompiled()
+    {
+        compiledNodes = null;
+        compiledOptions = null;
+    }
+
+
+    /**
+     * Get the loaded value of a node, from the compiled array if the node has been compiled.
+     *
+     * @param node node to get the value for
+     *
+     * @return the value or null if not loaded
+     */
+    protected Object getOption(final ConfigNode node)
+    {
+        final ConfigNode[] nodes = compiledNodes;
+        final Object[] options = compiledOptions;
+        if (nodes != null && options != null && node instanceof Enum)
+        {
+            final int index = ((Enum) node).ordinal();
+            if (index < nodes.length && index < options.length && nodes[index] == node)
+                return options[index];
+        }
+        return OPTIONS.get(node);
+    }
+
+
     /**
      * Saves the config.
      */
@@ -172,7 +229,7 @@ public abstract class ModularConfig extends EHMModule
             {
                 try
                 {
-                    i = (Integer) OPTIONS.get(node);
+                    i = (Integer) getOption(node);
                 } catch (NullPointerException npe)
                 {
                     i = (Integer) node.getDefaultValue();
@@ -202,7 +259,7 @@ public abstract class ModularConfig extends EHMModule
         {
             case STRING:
             {
-                out = (String) OPTIONS.get(node);
+                out = (String) getOption(node);
                 if (out == null)
                 {
                     out = (String) node.getDefaultValue();
@@ -266,7 +323,7 @@ public abstract class ModularConfig extends EHMModule
             {
                 try
                 {
-                    d = (Double) OPTIONS.get(node);
+                    d = (Double) getOption(node);
                 } catch (NullPointerException npe)
                 {
                     d = (Double) node.getDefaultValue();
@@ -296,7 +353,7 @@ public abstract class ModularConfig extends EHMModule
         {
             case BOOLEAN:
             {
-                bool = (Boolean) OPTIONS.get(node);
+                bool = (Boolean) getOption(node);
                 break;
             }
             default:
@@ -322,7 +379,7 @@ public abstract class ModularConfig extends EHMModule
         {
             case COLOR:
             {
-                Object value = OPTIONS.get(node);
+                Object value = getOption(node);
                 if (value instanceof ChatColor)
                     color = (ChatColor) value;
                 else //ConcurrentHashMap doesn't allow null values, so we just put an object of another type in the map to symbolize a null value
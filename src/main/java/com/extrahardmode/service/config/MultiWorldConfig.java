@@ -35,6 +35,7 @@ import com.google.common.collect.Table;
 import org.apache.commons.lang.Validate;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -59,6 +60,11 @@ public abstract class MultiWorldConfig extends EHMModule
 
     private Table<String/*world*/, ConfigNode, Object> OPTIONS;
 
+    /**
+     * Compiled values for fast lookup, null until {@link #compile} has been called
+     */
+    private volatile ConfigSnapshot snapshot;
+
 
     /**
      * Constructor.
@@ -92,6 +98,7 @@ public abstract class MultiWorldConfig extends EHMModule
     {
         Validate.notNull(node, "Supplied ConfigNode was null - world: " + world + " value: " + value);
         Validate.notNull(world, "Supplied World was null - node: " + node + " value: " + value);
+        snapshot = null;
         switch (node.getVarType())
         {
             case LIST:
@@ -208,6 +215,45 @@ public abstract class MultiWorldConfig extends EHMModule
     }
 
 
+    /**
+     * Is the node set to anything but its disabled value in at least one world
+     *
+     * @param node node to check, nodes which can't be disabled always count as active
+     *
+     * @return if the node is active somewhere
+     */
+    public boolean isActiveInAnyWorld(final ConfigNode node)
+    {
+        for (String world : getEnabledWorlds())
+        {
+            switch (node.getVarType())
+            {
+                case BOOLEAN:
+                {
+                    if (getBoolean(node, world))
+                        return true;
+                    break;
+                }
+                case INTEGER:
+                {
+                    if (getInt(node, world) != toInt(node, null))
+                        return true;
+                    break;
+                }
+                case DOUBLE:
+                {
+                    if (getDouble(node, world) != toDouble(node, null))
+                        return true;
+                    break;
+                }
+                default:
+                    return true;
+            }
+        }
+        return false;
+    }
+
+
     /**
      * Does this config apply to all loaded worlds
      *
@@ -290,12 +336,12 @@ public abstract class MultiWorldConfig extends EHMModule
         {
             case INTEGER:
             {
-                Object obj = null;
-                if (OPTIONS.contains(world, node))
-                    obj = OPTIONS.get(world, node);
-                else if (enabledForAll)
-                    obj = OPTIONS.get(ALL_WORLDS, node);
-                i = obj instanceof Integer ? (Integer) obj : (Integer) node.getValueToDisable();
+                final ConfigSnapshot compiled = snapshot;
+                final int index = compiled != null ? compiled.indexOf(node) : -1;
+                if (index >= 0)
+                    i = compiled.forWorld(world).getInt(index);
+                else
+                    i = toInt(node, lookup(node, world));
                 break;
             }
             default:
@@ -321,12 +367,12 @@ public abstract class MultiWorldConfig extends EHMModule
         {
             case DOUBLE:
             {
-                Object obj = null;
-                if (OPTIONS.contains(world, node))
-                    obj = OPTIONS.get(world, node);
-                else if (enabledForAll)
-                    obj = OPTIONS.get(ALL_WORLDS, node);
-                d = obj instanceof Number ? ((Number) obj).doubleValue() : (Double) node.getValueToDisable();
+                final ConfigSnapshot compiled = snapshot;
+                final int index = compiled != null ? compiled.indexOf(node) : -1;
+                if (index >= 0)
+                    d = compiled.forWorld(world).getDouble(index);
+                else
+                    d = toDouble(node, lookup(node, world));
                 break;
             }
             default:
@@ -352,12 +398,12 @@ public abstract class MultiWorldConfig extends EHMModule
         {
             case BOOLEAN:
             {
-                Object obj = null;
-                if (OPTIONS.contains(world, node))
-                    obj = OPTIONS.get(world, node);
-                else if (enabledForAll)
-                    obj = OPTIONS.get(ALL_WORLDS, node);
-                bool = obj instanceof Boolean ? (Boolean) obj : (Boolean) node.getValueToDisable();
+                final ConfigSnapshot compiled = snapshot;
+                final int index = compiled != null ? compiled.indexOf(node) : -1;
+                if (index >= 0)
+                    bool = compiled.forWorld(world).getBoolean(index);
+                else
+                    bool = toBoolean(node, lookup(node, world));
                 break;
             }
             default:
@@ -383,12 +429,12 @@ public abstract class MultiWorldConfig extends EHMModule
         {
             case STRING:
             {
-                Object obj = null;
-                if (OPTIONS.contains(world, node))
-                    obj = OPTIONS.get(world, node);
-                else if (enabledForAll)
-                    obj = OPTIONS.get(ALL_WORLDS, node);
-                out = obj instanceof String ? (String) obj : (String) node.getValueToDisable();
+                final ConfigSnapshot compiled = snapshot;
+                final int index = compiled != null ? compiled.indexOf(node) : -1;
+                if (index >= 0)
+                    out = compiled.forWorld(world).getString(index);
+                else
+                    out = (String) toObject(node, lookup(node, world));
                 break;
             }
             default:
@@ -414,12 +460,12 @@ public abstract class MultiWorldConfig extends EHMModule
         {
             case LIST:
             {
-                Object obj = null;
-                if (OPTIONS.contains(world, node))
-                    obj = OPTIONS.get(world, node);
-                else if (enabledForAll)
-                    obj = OPTIONS.get(ALL_WORLDS, node);
-                list = obj instanceof List ? (List) obj : (List) node.getValueToDisable();
+                final ConfigSnapshot compiled = snapshot;
+                final int index = compiled != null ? compiled.indexOf(node) : -1;
+                if (index >= 0)
+                    list = compiled.forWorld(world).getStringList(index);
+                else
+                    list = (List) toObject(node, lookup(node, world));
                 break;
             }
             default:
@@ -439,12 +485,12 @@ public abstract class MultiWorldConfig extends EHMModule
         {
             case POTION_EFFECT:
             {
-                Object obj = null;
-                if (OPTIONS.contains(world, node))
-                    obj = OPTIONS.get(world, node);
-                else if (enabledForAll)
-                    obj = OPTIONS.get(ALL_WORLDS, node);
-                effect = obj instanceof PotionEffectHolder ? (PotionEffectHolder) obj : (PotionEffectHolder) node.getValueToDisable();
+                final ConfigSnapshot compiled = snapshot;
+                final int index = compiled != null ? compiled.indexOf(node) : -1;
+                if (index >= 0)
+                    effect = compiled.forWorld(world).getPotionEffect(index);
+                else
+                    effect = (PotionEffectHolder) toObject(node, lookup(node, world));
                 break;
             }
             default:
@@ -464,12 +510,12 @@ public abstract class MultiWorldConfig extends EHMModule
         {
             case BLOCKTYPE_LIST:
             {
-                Object obj = null;
-                if (OPTIONS.contains(world, node))
-                    obj = OPTIONS.get(world, node);
-                else if (enabledForAll)
-                    obj = OPTIONS.get(ALL_WORLDS, node);
-                blockList = obj instanceof BlockTypeList ? (BlockTypeList) obj : (BlockTypeList) node.getValueToDisable();
+                final ConfigSnapshot compiled = snapshot;
+                final int index = compiled != null ? compiled.indexOf(node) : -1;
+                if (index >= 0)
+                    blockList = compiled.forWorld(world).getBlocktypeList(index);
+                else
+                    blockList = (BlockTypeList) toObject(node, lookup(node, world));
                 break;
             }
             default:
@@ -489,12 +535,12 @@ public abstract class MultiWorldConfig extends EHMModule
         {
             case BLOCK_RELATION_LIST:
             {
-                Object obj = null;
-                if (OPTIONS.contains(world, node))
-                    obj = OPTIONS.get(world, node);
-                else if (enabledForAll)
-                    obj = OPTIONS.get(ALL_WORLDS, node);
-                blockList = obj instanceof BlockRelationsList ? (BlockRelationsList) obj : (BlockRelationsList) node.getValueToDisable();
+                final ConfigSnapshot compiled = snapshot;
+                final int index = compiled != null ? compiled.indexOf(node) : -1;
+                if (index >= 0)
+                    blockList = compiled.forWorld(world).getBlockRelationList(index);
+                else
+                    blockList = (BlockRelationsList) toObject(node, lookup(node, world));
                 break;
             }
             default:
@@ -506,6 +552,113 @@ public abstract class MultiWorldConfig extends EHMModule
     }
 
 
+    /**
+     * Get the raw value of a node for a world, falls back to the values of "@all" if enabled for all worlds
+     *
+     * @param node  node to get
+     * @param world world to look in, may be null to only look at the fallback values
+     *
+     * @return value or null if not set
+     */
+    private Object lookup(final ConfigNode node, final String world)
+    {
+        Object obj = null;
+        if (world != null && OPTIONS.contains(world, node))
+            obj = OPTIONS.get(world, node);
+        else if (enabledForAll)
+            obj = OPTIONS.get(ALL_WORLDS, node);
+        return obj;
+    }
+
+
+    private static int toInt(final ConfigNode node, final Object obj)
+    {
+        return obj instanceof Integer ? (Integer) obj : (Integer) node.getValueToDisable();
+    }
+
+
+    private static double toDouble(final ConfigNode node, final Object obj)
+    {
+        return obj instanceof Number ? ((Number) obj).doubleValue() : (Double) node.getValueToDisable();
+    }
+
+
+    private static boolean toBoolean(final ConfigNode node, final Object obj)
+    {
+        return obj instanceof Boolean ? (Boolean) obj : (Boolean) node.getValueToDisable();
+    }
+
+
+    /**
+     * Returns the value if it is of the type expected by the node or the value which disables the node
+     */
+    private static Object toObject(final ConfigNode node, final Object obj)
+    {
+        Class clazz = varTypeClassMap.get(node.getVarType());
+        return clazz != null && clazz.isInstance(obj) ? obj : node.getValueToDisable();
+    }
+
+
+    /**
+     * Compile the currently loaded values into a {@link ConfigSnapshot} and make it the source for all getters. The
+     * snapshot gets swapped in with a single write, so readers either see the complete old or the complete new values.
+     * <p/>
+     * Any call to {@link #set} afterwards invalidates the snapshot until it gets compiled again.
+     *
+     * @param nodes all nodes of an enum in ordinal order, f.e. RootNode.values()
+     */
+    public void compile(final ConfigNode[] nodes)
+    {
+        Map<String, ConfigSnapshot.WorldValues> worlds = new HashMap<String, ConfigSnapshot.WorldValues>();
+        for (String world : OPTIONS.rowKeySet())
+            worlds.put(world, compileWorld(nodes, world));
+        snapshot = new ConfigSnapshot(nodes.clone(), worlds, compileWorld(nodes, null));
+    }
+
+
+    private ConfigSnapshot.WorldValues compileWorld(final ConfigNode[] nodes, final String world)
+    {
+        ConfigSnapshot.WorldValues values = new ConfigSnapshot.WorldValues(nodes.length);
+        for (int i = 0; i < nodes.length; i++)
+        {
+            ConfigNode node = nodes[i];
+            switch (node.getVarType())
+            {
+                case BOOLEAN:
+                    values.setBoolean(i, toBoolean(node, lookup(node, world)));
+                    break;
+                case INTEGER:
+                    values.setInt(i, toInt(node, lookup(node, world)));
+                    break;
+                case DOUBLE:
+                    values.setDouble(i, toDouble(node, lookup(node, world)));
+                    break;
+                case STRING:
+                case LIST:
+                case POTION_EFFECT:
+                case BLOCKTYPE_LIST:
+                case BLOCK_RELATION_LIST:
+                    values.setObject(i, toObject(node, lookup(node, world)));
+                    break;
+                default: //comments etc.
+                    break;
+            }
+        }
+        return values;
+    }
+
+
+    /**
+     * Get the currently active compiled snapshot
+     *
+     * @return snapshot or null if the config hasn't been compiled or has been modified since
+     */
+    public ConfigSnapshot getSnapshot()
+    {
+        return snapshot;
+    }
+
+
     public abstract void load();
 
 
@@ -515,5 +668,6 @@ public abstract class MultiWorldConfig extends EHMModule
     public void clearCache()
     {
         OPTIONS.clear();
+        snapshot = null;
     }
 }
\ No newline at end of file
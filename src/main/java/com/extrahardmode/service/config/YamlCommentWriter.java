@@ -1,74 +1,48 @@
 package com.extrahardmode.service.config;
 
 
+import com.extrahardmode.service.IoHelper;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.*;
-import java.nio.charset.Charset;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Adds comments to yaml files
+ * <p/>
+ * The comment paths are stored in a prefix trie, so the lines can be streamed through without building the full path
+ * of every node.
  */
 public class YamlCommentWriter
 {
     /**
-     * Add comments to a configuration file (after writing it with snakeyaml)
+     * Maximum nesting depth of nodes in the yml
+     */
+    private static final int MAX_DEPTH = 20;
+
+
+    /**
+     * Add comments to a configuration file (after writing it with snakeyaml). The file only gets written to if the
+     * content changed.
      *
      * @param input    yml config file
      * @param comments path = key, comment lines = values
      */
     public static void write(File input, Map<String, String[]> comments)
     {
-        BufferedReader br;
-        //output
-        ByteArrayOutputStream memStream = new ByteArrayOutputStream(1024);
-        FileOutputStream outStream = null;
-        OutputStreamWriter writer = null;
-        //nodes
-        String[] nodes = new String[20];
         try
         {
-            br = new BufferedReader(new FileReader(input));
-            writer = new OutputStreamWriter(memStream, Charset.forName("UTF-8").newEncoder());
-
-            String line;
-            while ((line = br.readLine()) != null)
+            StringWriter out = new StringWriter();
+            BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(input), IoHelper.UTF8));
+            try
+            {
+                write(br, out, new CommentTrie(comments));
+            } finally
             {
-                boolean comment = isComment(line);
-                boolean listItem = isListItem(line);
-
-                int level = getIndentation(line) / 2;
-
-                String nodename = getNodeName(line);
-                nodes[level] = nodename;
-                nodes[level + 1] = null;  //bcs
-                //path
-                StringBuilder sb = new StringBuilder();
-                for (int i = 0; i <= level; i++)
-                    if (nodes[i] != null)
-                    {
-                        if (i > 0)
-                            sb.append('.');
-                        sb.append(nodes[i]);
-                    }
-                String path = sb.toString();
-
-                //we have a comment?
-                if (comments.containsKey(path) && !(comment || listItem)) //TODO split long lines
-                    for (String commentLine : comments.get(path))
-                        writer.write(StringUtils.repeat(" ", level * 2) + "# " + commentLine + String.format("%n"));
-                line += String.format("%n");
-                writer.write(line);
-
-                line.length();  //useless breakpoint line
+                br.close();
             }
-            br.close();
-            //Overwrite the original file
-            outStream = new FileOutputStream(input);
-            writer.close();
-            memStream.writeTo(outStream);
-            outStream.close();
+            IoHelper.writeIfChanged(input, out.toString());
         }
         //BLABLABLA EXCEPTIONS BLABLA
         catch (FileNotFoundException e)
@@ -81,36 +55,128 @@ public class YamlCommentWriter
     }
 
 
+    /**
+     * Add comments to a yml while streaming it from the reader to the writer
+     *
+     * @param in       yml to read line by line
+     * @param out      where to write the commented yml to
+     * @param comments comments to add
+     */
+    public static void write(BufferedReader in, Writer out, CommentTrie comments) throws IOException
+    {
+        final String newLine = String.format("%n");
+        //trie nodes of the parents of the current line, index = level
+        CommentTrie[] parents = new CommentTrie[MAX_DEPTH + 1];
+        parents[0] = comments;
+
+        String line;
+        while ((line = in.readLine()) != null)
+        {
+            int indentation = getIndentation(line);
+            int level = Math.min(indentation / 2, MAX_DEPTH - 1);
+
+            if (!isComment(line) && !isListItem(line, indentation))
+            {
+                String nodeName = getNodeName(line, indentation);
+                CommentTrie parent = parents[level];
+                CommentTrie node = parent != null && nodeName != null ? parent.getChild(nodeName) : null;
+                parents[level + 1] = node;
+
+                //we have a comment? TODO split long lines
+                if (node != null && node.getComments() != null)
+                {
+                    String indent = StringUtils.repeat(" ", level * 2);
+                    for (String commentLine : node.getComments())
+                        out.write(indent + "# " + commentLine + newLine);
+                }
+            }
+            out.write(line);
+            out.write(newLine);
+        }
+    }
+
+
     private static boolean isComment(String line)
     {
         return line.startsWith("#");
     }
 
 
-    private static boolean isListItem(String line)
+    private static boolean isListItem(String line, int indentation)
     {
-        return line.substring(getIndentation(line)).startsWith("-");
+        return line.startsWith("-", indentation);
     }
 
 
-    private static String getNodeName(String line)
+    private static String getNodeName(String line, int indentation)
     {
-        if (isComment(line) || !line.contains(":"))
-            return null;
-        return line.substring(getIndentation(line)).split(":")[0];
+        int colon = line.indexOf(':', indentation);
+        return colon >= 0 ? line.substring(indentation, colon) : null;
     }
 
 
     private static int getIndentation(String line)
     {
         int level = 0;
-        for (char c : line.toCharArray())
+        while (level < line.length() && line.charAt(level) == ' ')
+            level++;
+        return level;
+    }
+
+
+    /**
+     * Prefix trie of comment paths, every node of the trie is one part of a path like "World Rules.Torches".
+     */
+    public static class CommentTrie
+    {
+        private final Map<String, CommentTrie> children = new HashMap<String, CommentTrie>();
+
+        private String[] comments;
+
+
+        public CommentTrie()
         {
-            if (c == ' ')
-                level++;
-            else
-                break;
         }
-        return level;
+
+
+        /**
+         * Build the trie from dotted paths
+         *
+         * @param comments path = key, comment lines = values
+         */
+        public CommentTrie(Map<String, String[]> comments)
+        {
+            for (Map.Entry<String, String[]> entry : comments.entrySet())
+                add(entry.getKey(), entry.getValue());
+        }
+
+
+        public void add(String path, String[] commentLines)
+        {
+            CommentTrie node = this;
+            for (String part : path.split("\\."))
+            {
+                CommentTrie child = node.children.get(part);
+                if (child == null)
+                {
+                    child = new CommentTrie();
+                    node.children.put(part, child);
+                }
+                node = child;
+            }
+            node.comments = commentLines;
+        }
+
+
+        public CommentTrie getChild(String name)
+        {
+            return children.get(name);
+        }
+
+
+        public String[] getComments()
+        {
+            return comments;
+        }
     }
 }
@@ -3,6 +3,7 @@ package com.extrahardmode.service.config.customtypes;
 
 import org.bukkit.block.Block;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,6 +13,14 @@ import java.util.Map;
 public class BlockRelationsList
 {
     private Map<BlockType, BlockType> mBlockRelations = new HashMap<BlockType, BlockType>();
+    /**
+     * Lookup table indexed by block id, then by block data. Built on the first lookup after the relations changed.
+     */
+    private volatile BlockType[][] mCompiled;
+    /**
+     * Ids above this aren't indexed and get resolved by iterating over the relations
+     */
+    private static final int MAX_INDEXED_ID = 4095;
     /**
      * An empty list
      */
@@ -59,27 +68,94 @@ public class BlockRelationsList
     }
 
 
+    /**
+     * Get all relations
+     *
+     * @return unmodifiable map of block -> related block
+     */
+    public Map<BlockType, BlockType> getRelations()
+    {
+        return Collections.unmodifiableMap(mBlockRelations);
+    }
+
+
     public void add(BlockType block1, BlockType block2)
     {
         mBlockRelations.put(block1, block2);
+        mCompiled = null;
     }
 
 
     public BlockType get(BlockType blockType)
     {
-        for (Map.Entry<BlockType, BlockType> entry : mBlockRelations.entrySet())
-            if (entry.getKey().equals(blockType))
-                return entry.getValue();
-        return null;
+        return mBlockRelations.get(blockType);
     }
 
 
     public BlockType get(Block block)
     {
-        for (Map.Entry<BlockType, BlockType> entry : mBlockRelations.entrySet())
-            if (entry.getKey().matches(block.getTypeId(), block.getData()))
-                return entry.getValue();
-        return null;
+        return get(block.getTypeId(), block.getData());
+    }
+
+
+    /**
+     * Get the BlockType related to a block with the given id and data
+     *
+     * @param blockId id of the block
+     * @param data    block data 0-15
+     *
+     * @return the related BlockType or null if the block has no relation
+     */
+    public BlockType get(int blockId, byte data)
+    {
+        if (blockId < 0 || blockId > MAX_INDEXED_ID || data < 0 || data > 15)
+        {
+            for (Map.Entry<BlockType, BlockType> entry : mBlockRelations.entrySet())
+                if (entry.getKey().matches(blockId, data))
+                    return entry.getValue();
+            return null;
+        }
+        final BlockType[][] table = getCompiled();
+        if (blockId >= table.length || table[blockId] == null)
+            return null;
+        return table[blockId][data];
+    }
+
+
+    /**
+     * Get the lookup table, building it if the relations changed since the last lookup.
+     * Relations that specify meta take precedence over relations which match all meta of the same block.
+     */
+    private BlockType[][] getCompiled()
+    {
+        BlockType[][] table = mCompiled;
+        if (table == null)
+        {
+            int maxId = -1;
+            for (BlockType key : mBlockRelations.keySet())
+                if (key.getBlockId() <= MAX_INDEXED_ID && key.getBlockId() > maxId)
+                    maxId = key.getBlockId();
+            table = new BlockType[maxId + 1][];
+            //Wildcards first so relations with explicit meta overwrite them
+            for (int pass = 0; pass < 2; pass++)
+            {
+                for (Map.Entry<BlockType, BlockType> entry : mBlockRelations.entrySet())
+                {
+                    final BlockType key = entry.getKey();
+                    final int blockId = key.getBlockId();
+                    if (blockId < 0 || blockId > MAX_INDEXED_ID || key.hasMeta() != (pass == 1))
+                        continue;
+                    if (table[blockId] == null)
+                        table[blockId] = new BlockType[16];
+                    final int mask = key.getMetaMask();
+                    for (int data = 0; data < 16; data++)
+                        if ((mask & 1 << data) != 0)
+                            table[blockId][data] = entry.getValue();
+                }
+            }
+            mCompiled = table;
+        }
+        return table;
     }
 
 
@@ -87,4 +163,22 @@ public class BlockRelationsList
     {
         return get(block) != null;
     }
+
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == this)
+            return true;
+        else if (!(obj instanceof BlockRelationsList))
+            return false;
+        return mBlockRelations.equals(((BlockRelationsList) obj).mBlockRelations);
+    }
+
+
+    @Override
+    public int hashCode()
+    {
+        return mBlockRelations.hashCode();
+    }
 }
@@ -68,6 +68,33 @@ public final class BlockType
     }
 
 
+    /**
+     * @return if this BlockType only matches some metadata values, false if it matches all of them
+     */
+    public boolean hasMeta()
+    {
+        return meta.size() > 0;
+    }
+
+
+    /**
+     * Get the block data values 0-15 this BlockType matches as a bitmask, bit n is set if data value n matches.
+     * Meta values outside of the range of block data are not part of the mask.
+     *
+     * @return the mask, 0xFFFF if no meta has been specified
+     */
+    public int getMetaMask()
+    {
+        if (meta.isEmpty())
+            return 0xFFFF;
+        int mask = 0;
+        for (short data : meta)
+            if (data >= 0 && data < 16)
+                mask |= 1 << data;
+        return mask;
+    }
+
+
     public byte getByteMeta()
     {
         return meta.size() > 0 ? (byte) RegexHelper.safeCast(meta.iterator().next(), Byte.MIN_VALUE, Byte.MAX_VALUE) : 0;
@@ -8,6 +8,19 @@ import java.util.*;
 public class BlockTypeList
 {
     private Map<Integer, BlockType> blockTypeMap = new HashMap<Integer, BlockType>();
+    /**
+     * Bitset indexed by (id << 4 | data), 16 bits per block id. Built from the map on first use and
+     * discarded whenever the list changes.
+     */
+    private volatile long[] compiled;
+    /**
+     * If an entry only matches meta outside of 0-15, its id is in the list but has no bits set
+     */
+    private boolean unindexedMeta;
+    /**
+     * Ids above this are ignored by the bitset and looked up in the map
+     */
+    private static final int MAX_INDEXED_ID = 4095;
     /**
      * Empty List with no values
      */
@@ -28,14 +41,73 @@ public class BlockTypeList
 
     public boolean contains(Block block)
     {
-        BlockType type = blockTypeMap.get(block.getTypeId());
-        return type != null && type.matches(block);
+        return contains(block.getTypeId(), block.getData());
+    }
+
+
+    /**
+     * Check if a block with the given id and data value is in this list, without boxing or allocating.
+     *
+     * @param blockId id of the block
+     * @param data    block data 0-15
+     *
+     * @return if the block matches any BlockType in this list
+     */
+    public boolean contains(int blockId, byte data)
+    {
+        if (blockId < 0 || blockId > MAX_INDEXED_ID || data < 0 || data > 15)
+        {
+            BlockType type = blockTypeMap.get(blockId);
+            return type != null && type.matches(blockId, data);
+        }
+        final long[] bits = getCompiled();
+        final int index = blockId << 4 | data;
+        return index >>> 6 < bits.length && (bits[index >>> 6] & 1L << (index & 63)) != 0;
     }
 
 
     public boolean contains(int blockId)
     {
-        return blockTypeMap.containsKey(blockId);
+        if (blockId < 0 || blockId > MAX_INDEXED_ID)
+            return blockTypeMap.containsKey(blockId);
+        //4 ids share one long, mask out the 16 bits of this id
+        final long[] bits = getCompiled();
+        final int word = blockId >>> 2;
+        if (word < bits.length && (bits[word] >>> ((blockId & 3) << 4) & 0xFFFFL) != 0)
+            return true;
+        return unindexedMeta && blockTypeMap.containsKey(blockId);
+    }
+
+
+    /**
+     * Get the bitset for this list, compiling it if the list changed since the last lookup.
+     * The array is only published once fully built, so concurrent readers either see a complete bitset or build their own.
+     */
+    private long[] getCompiled()
+    {
+        long[] bits = compiled;
+        if (bits == null)
+        {
+            int maxId = -1;
+            for (Integer blockId : blockTypeMap.keySet())
+                if (blockId <= MAX_INDEXED_ID && blockId > maxId)
+                    maxId = blockId;
+            bits = new long[maxId < 0 ? 0 : (maxId >>> 2) + 1];
+            boolean unindexed = false;
+            for (BlockType blockType : blockTypeMap.values())
+            {
+                final int blockId = blockType.getBlockId();
+                if (blockId < 0 || blockId > MAX_INDEXED_ID)
+                    continue;
+                final int mask = blockType.getMetaMask();
+                unindexed |= mask == 0;
+                bits[blockId >>> 2] |= (long) mask << ((blockId & 3) << 4);
+            }
+            //written before the bitset is published
+            unindexedMeta = unindexed;
+            compiled = bits;
+        }
+        return bits;
     }
 
 
@@ -44,11 +116,19 @@ public class BlockTypeList
         //merge meta if exists
         if (blockTypeMap.containsKey(blockType.getBlockId()))
         {
-            Set<Short> merged = blockTypeMap.get(blockType.getBlockId()).getAllMeta();
-            merged.addAll(blockType.getAllMeta());
-            blockType = new BlockType(blockType.getBlockId(), merged);
+            BlockType existing = blockTypeMap.get(blockType.getBlockId());
+            //no meta means all meta matches, merging would make the merged type more restrictive
+            if (!existing.hasMeta() || !blockType.hasMeta())
+                blockType = new BlockType(blockType.getBlockId());
+            else
+            {
+                Set<Short> merged = existing.getAllMeta();
+                merged.addAll(blockType.getAllMeta());
+                blockType = new BlockType(blockType.getBlockId(), merged);
+            }
         }
         blockTypeMap.put(blockType.getBlockId(), blockType);
+        compiled = null;
     }
 
 
@@ -68,4 +148,22 @@ public class BlockTypeList
     {
         return blockTypeMap.values().toArray(new BlockType[blockTypeMap.size()]);
     }
+
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == this)
+            return true;
+        else if (!(obj instanceof BlockTypeList))
+            return false;
+        return blockTypeMap.equals(((BlockTypeList) obj).blockTypeMap);
+    }
+
+
+    @Override
+    public int hashCode()
+    {
+        return blockTypeMap.hashCode();
+    }
 }
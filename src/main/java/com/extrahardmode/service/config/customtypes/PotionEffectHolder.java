@@ -145,4 +145,27 @@ public class PotionEffectHolder
     {
         this.bukkitEffectType = bukkitEffectType;
     }
+
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == this)
+            return true;
+        else if (!(obj instanceof PotionEffectHolder))
+            return false;
+        PotionEffectHolder other = (PotionEffectHolder) obj;
+        return duration == other.duration && amplifier == other.amplifier &&
+                (bukkitEffectType == null ? other.bukkitEffectType == null : bukkitEffectType.equals(other.bukkitEffectType));
+    }
+
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 31 * duration + amplifier;
+        if (bukkitEffectType != null)
+            hash = 31 * hash + bukkitEffectType.hashCode();
+        return hash;
+    }
 }
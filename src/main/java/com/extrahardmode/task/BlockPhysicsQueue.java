@@ -0,0 +1,304 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.task;
+
+
+import com.extrahardmode.ExtraHardMode;
+import com.extrahardmode.config.RootConfig;
+import com.extrahardmode.config.RootNode;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Queue for physics checks which is worked off by one repeating task.
+ * <p/>
+ * A block is only queued once at a time: checking the same block again while it is still waiting merges the requests,
+ * keeping the higher recursion count. Every world gets its own queue and is checked under the budget set in the config
+ * of that world. Checks over the budget wait for the next tick.
+ */
+public class BlockPhysicsQueue implements Runnable
+{
+    /**
+     * Plugin instance.
+     */
+    private final ExtraHardMode plugin;
+
+    /**
+     * Config Reference
+     */
+    private final RootConfig CFG;
+
+    /**
+     * World name -> queued checks in that world
+     */
+    private final Map<String, WorldQueue> queues = new HashMap<String, WorldQueue>();
+
+    /**
+     * Ticks since this queue has been started
+     */
+    private long tick = 0;
+
+    /**
+     * Statistics
+     */
+    private long queuedCount = 0, mergedCount = 0, droppedCount = 0, checkedCount = 0, postponedCount = 0;
+
+
+    /**
+     * Constructor.
+     *
+     * @param plugin - Plugin instance.
+     */
+    public BlockPhysicsQueue(ExtraHardMode plugin)
+    {
+        this.plugin = plugin;
+        CFG = plugin.getModuleForClass(RootConfig.class);
+    }
+
+
+    /**
+     * Queue a physics check for a block
+     *
+     * @param block          - Target block.
+     * @param recursionCount - Number of times to execute.
+     * @param force          - Whether to force adjacent blocks to be checked for the first iteration
+     * @param wait           - how many ticks to wait before checking the block
+     */
+    public void add(Block block, int recursionCount, boolean force, int wait)
+    {
+        final World world = block.getWorld();
+        WorldQueue queue = queues.get(world.getName());
+        if (queue == null)
+        {
+            queue = new WorldQueue(world.getName());
+            queues.put(world.getName(), queue);
+        }
+
+        final long key = pack(block.getX(), block.getY(), block.getZ());
+        final QueuedCheck pending = queue.pending.get(key);
+        if (pending != null)
+        {
+            pending.recursionCount = Math.max(pending.recursionCount, recursionCount);
+            pending.force |= force;
+            mergedCount++;
+            return;
+        }
+
+        final int limit = CFG.getInt(RootNode.PHYSICS_QUEUE_LIMIT, world.getName());
+        if (limit > 0 && queue.pending.size() >= limit)
+        {
+            droppedCount++;
+            return;
+        }
+
+        final QueuedCheck check = new QueuedCheck(key, block.getX(), block.getY(), block.getZ(), recursionCount, force);
+        queue.pending.put(key, check);
+        final long due = tick + Math.max(0, wait);
+        ArrayDeque<QueuedCheck> bucket = queue.scheduled.get(due);
+        if (bucket == null)
+        {
+            bucket = new ArrayDeque<QueuedCheck>();
+            queue.scheduled.put(due, bucket);
+        }
+        bucket.add(check);
+        queuedCount++;
+    }
+
+
+    @Override
+    public void run()
+    {
+        tick++;
+        //checks can queue more checks, don't iterate over the map directly
+        for (WorldQueue queue : queues.values().toArray(new WorldQueue[queues.size()]))
+        {
+            final World world = plugin.getServer().getWorld(queue.worldName);
+            if (world == null) //unloaded
+            {
+                droppedCount += queue.pending.size();
+                queues.remove(queue.worldName);
+                continue;
+            }
+            drain(world, queue);
+        }
+    }
+
+
+    /**
+     * Check all blocks that are due in this world until the budget for this tick is used up.
+     */
+    private void drain(World world, WorldQueue queue)
+    {
+        final int maxBlocks = CFG.getInt(RootNode.PHYSICS_BUDGET_BLOCKS, world.getName());
+        final int maxMillis = CFG.getInt(RootNode.PHYSICS_BUDGET_MILLIS, world.getName());
+        final long deadline = maxMillis > 0 ? System.nanoTime() + maxMillis * 1000000L : Long.MAX_VALUE;
+
+        int checked = 0;
+        Map.Entry<Long, ArrayDeque<QueuedCheck>> bucket;
+        while ((bucket = queue.scheduled.firstEntry()) != null && bucket.getKey() <= tick)
+        {
+            if ((maxBlocks > 0 && checked >= maxBlocks) || System.nanoTime() > deadline)
+            {
+                postponedCount++;
+                return;
+            }
+            final QueuedCheck check = bucket.getValue().poll();
+            if (bucket.getValue().isEmpty())
+                queue.scheduled.remove(bucket.getKey());
+            if (check == null)
+                continue;
+            queue.pending.remove(check.key);
+
+            new BlockPhysicsCheckTask(plugin, world.getBlockAt(check.x, check.y, check.z), check.recursionCount, check.force).run();
+            checked++;
+            checkedCount++;
+        }
+    }
+
+
+    /**
+     * Remove all queued checks
+     */
+    public void clear()
+    {
+        queues.clear();
+    }
+
+
+    /**
+     * @return the amount of blocks currently waiting to be checked in all worlds
+     */
+    public int getQueueDepth()
+    {
+        int depth = 0;
+        for (WorldQueue queue : queues.values())
+            depth += queue.pending.size();
+        return depth;
+    }
+
+
+    /**
+     * @return how many checks have been queued since the start
+     */
+    public long getQueuedCount()
+    {
+        return queuedCount;
+    }
+
+
+    /**
+     * @return how many checks have been merged into an already queued check of the same block
+     */
+    public long getMergedCount()
+    {
+        return mergedCount;
+    }
+
+
+    /**
+     * @return how many checks have been dropped because the queue was full or the world unloaded
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount;
+    }
+
+
+    /**
+     * @return how many blocks have been checked
+     */
+    public long getCheckedCount()
+    {
+        return checkedCount;
+    }
+
+
+    /**
+     * @return how many times a world ran out of budget before its queue was empty
+     */
+    public long getPostponedCount()
+    {
+        return postponedCount;
+    }
+
+
+    /**
+     * Pack a block position into a long. 26 bits for x and z, 12 bits for y.
+     */
+    public static long pack(int x, int y, int z)
+    {
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) z & 0x3FFFFFFL) << 12 | ((long) y & 0xFFFL);
+    }
+
+
+    /**
+     * The checks of one world
+     */
+    private static class WorldQueue
+    {
+        private final String worldName;
+
+        /**
+         * Packed position -> check waiting for that block
+         */
+        private final Map<Long, QueuedCheck> pending = new HashMap<Long, QueuedCheck>();
+
+        /**
+         * Tick the checks are due -> checks
+         */
+        private final TreeMap<Long, ArrayDeque<QueuedCheck>> scheduled = new TreeMap<Long, ArrayDeque<QueuedCheck>>();
+
+
+        private WorldQueue(String worldName)
+        {
+            this.worldName = worldName;
+        }
+    }
+
+
+    /**
+     * A block waiting to be checked
+     */
+    private static class QueuedCheck
+    {
+        private final long key;
+        private final int x, y, z;
+        private int recursionCount;
+        private boolean force;
+
+
+        private QueuedCheck(long key, int x, int y, int z, int recursionCount, boolean force)
+        {
+            this.key = key;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.recursionCount = recursionCount;
+            this.force = force;
+        }
+    }
+}
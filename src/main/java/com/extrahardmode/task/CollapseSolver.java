@@ -0,0 +1,242 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.task;
+
+
+import com.extrahardmode.ExtraHardMode;
+import com.extrahardmode.config.RootConfig;
+import com.extrahardmode.config.RootNode;
+import com.extrahardmode.module.BlockModule;
+import com.extrahardmode.service.config.customtypes.BlockTypeList;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.*;
+
+/**
+ * Lets the blocks around an explosion crater cave in.
+ * <p/>
+ * Only the shell of the crater, the blocks next to a destroyed block, can lose their support through the explosion.
+ * Each of them is checked exactly once from the bottom up, a block that falls makes the block above it part of the
+ * shell. The result is a single list of falling blocks ordered lowest first, so the cost depends on the surface of
+ * the crater instead of on the number of destroyed blocks times the recursion depth of {@link BlockPhysicsCheckTask}.
+ * <p/>
+ * The blocks are dropped under the same per tick budget as the {@link BlockPhysicsQueue}, a big crater caves in over
+ * several ticks.
+ */
+public class CollapseSolver implements Runnable
+{
+    /**
+     * Upper limit of blocks a single crater can drop
+     */
+    private static final int MAX_FALLING = 4096;
+
+    private static final int AIR = 0, TORCH = 50, SAND = 12, GRAVEL = 13;
+
+    /**
+     * Order in which the shell is checked, bottom up
+     */
+    private static final Comparator<int[]> BOTTOM_UP = new Comparator<int[]>()
+    {
+        @Override
+        public int compare(int[] o1, int[] o2)
+        {
+            return o1[1] < o2[1] ? -1 : (o1[1] == o2[1] ? 0 : 1);
+        }
+    };
+
+    /**
+     * Plugin instance.
+     */
+    private final ExtraHardMode plugin;
+
+    /**
+     * World of the explosion
+     */
+    private final World world;
+
+    /**
+     * Positions of the destroyed blocks, and the same positions packed for lookups
+     */
+    private final int[][] destroyed;
+    private final Set<Long> crater;
+
+    /**
+     * Additional blocks which fall, and if they are enabled
+     */
+    private final BlockTypeList fallingBlocks;
+    private final boolean fallingBlocksEnabled;
+
+    /**
+     * Budget per tick to drop blocks
+     */
+    private final int maxBlocks, maxMillis;
+
+    /**
+     * Blocks that still have to fall, null until the crater has been solved
+     */
+    private List<int[]> falling;
+    private int next = 0;
+
+
+    /**
+     * Constructor.
+     *
+     * @param plugin    - Plugin instance.
+     * @param world     - World of the explosion.
+     * @param destroyed - Blocks destroyed by the explosion.
+     */
+    public CollapseSolver(ExtraHardMode plugin, World world, Collection<Block> destroyed)
+    {
+        this(plugin, world, toPositions(destroyed));
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param plugin    - Plugin instance.
+     * @param world     - World of the explosion.
+     * @param destroyed - Positions {x, y, z} of the destroyed blocks.
+     */
+    public CollapseSolver(ExtraHardMode plugin, World world, int[][] destroyed)
+    {
+        final RootConfig CFG = plugin.getModuleForClass(RootConfig.class);
+        this.plugin = plugin;
+        this.world = world;
+        this.destroyed = destroyed;
+        this.crater = new HashSet<Long>(destroyed.length * 2);
+        for (int[] pos : destroyed)
+            crater.add(BlockPhysicsQueue.pack(pos[0], pos[1], pos[2]));
+        this.fallingBlocks = CFG.getBlocktypeList(RootNode.MORE_FALLING_BLOCKS, world.getName());
+        this.fallingBlocksEnabled = CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_ENABLE, world.getName());
+        this.maxBlocks = CFG.getInt(RootNode.PHYSICS_BUDGET_BLOCKS, world.getName());
+        this.maxMillis = CFG.getInt(RootNode.PHYSICS_BUDGET_MILLIS, world.getName());
+    }
+
+
+    private static int[][] toPositions(Collection<Block> blocks)
+    {
+        final int[][] positions = new int[blocks.size()][];
+        int i = 0;
+        for (Block block : blocks)
+            positions[i++] = new int[]{block.getX(), block.getY(), block.getZ()};
+        return positions;
+    }
+
+
+    @Override
+    public void run()
+    {
+        if (plugin.getServer().getWorld(world.getUID()) == null) //unloaded
+            return;
+        if (falling == null)
+            falling = solve();
+
+        final BlockModule module = plugin.getModuleForClass(BlockModule.class);
+        final long deadline = maxMillis > 0 ? System.nanoTime() + maxMillis * 1000000L : Long.MAX_VALUE;
+        int dropped = 0;
+        while (next < falling.size())
+        {
+            if ((maxBlocks > 0 && dropped >= maxBlocks) || System.nanoTime() > deadline)
+            {
+                plugin.getServer().getScheduler().runTaskLater(plugin, this, 1L);
+                return;
+            }
+            final int[] pos = falling.get(next++);
+            //the block might have changed since the crater was solved
+            if (!world.isChunkLoaded(pos[0] >> 4, pos[2] >> 4))
+                continue;
+            final Block block = world.getBlockAt(pos[0], pos[1], pos[2]);
+            if (!isFalling(block.getTypeId(), block.getData()))
+                continue;
+            module.applyPhysics(block, true);
+            dropped++;
+        }
+    }
+
+
+    /**
+     * Find all blocks that lose their support, has to be called after the explosion has destroyed the blocks
+     *
+     * @return positions of the blocks that fall, lowest first
+     */
+    public List<int[]> solve()
+    {
+        final Set<Long> evaluated = new HashSet<Long>();
+        final Set<Long> fallen = new HashSet<Long>();
+        final PriorityQueue<int[]> shell = new PriorityQueue<int[]>(Math.max(1, destroyed.length * 2), BOTTOM_UP);
+        final List<int[]> falling = new ArrayList<int[]>();
+
+        for (int[] block : destroyed)
+        {
+            final int x = block[0], y = block[1], z = block[2];
+            addToShell(shell, evaluated, x, y + 1, z);
+            addToShell(shell, evaluated, x, y - 1, z);
+            addToShell(shell, evaluated, x + 1, y, z);
+            addToShell(shell, evaluated, x - 1, y, z);
+            addToShell(shell, evaluated, x, y, z + 1);
+            addToShell(shell, evaluated, x, y, z - 1);
+        }
+
+        int[] pos;
+        while ((pos = shell.poll()) != null && falling.size() < MAX_FALLING)
+        {
+            final int x = pos[0], y = pos[1], z = pos[2];
+            //everything below has been decided already
+            if (y > 0 && world.isChunkLoaded(x >> 4, z >> 4) && isFalling(world.getBlockTypeIdAt(x, y, z), world.getBlockAt(x, y, z).getData())
+                    && (fallen.contains(BlockPhysicsQueue.pack(x, y - 1, z)) || canFallInto(world.getBlockTypeIdAt(x, y - 1, z))))
+            {
+                fallen.add(BlockPhysicsQueue.pack(x, y, z));
+                falling.add(pos);
+                //the block above just lost its support
+                addToShell(shell, evaluated, x, y + 1, z);
+            }
+        }
+        return falling;
+    }
+
+
+    private void addToShell(PriorityQueue<int[]> shell, Set<Long> evaluated, int x, int y, int z)
+    {
+        if (y < 0 || y > 255)
+            return;
+        final long packed = BlockPhysicsQueue.pack(x, y, z);
+        if (!crater.contains(packed) && evaluated.add(packed))
+            shell.add(new int[]{x, y, z});
+    }
+
+
+    /**
+     * Air, liquids and torches don't support a block
+     */
+    private static boolean canFallInto(int id)
+    {
+        return id == AIR || (id >= 8 && id <= 11) || id == TORCH;
+    }
+
+
+    private boolean isFalling(int id, byte data)
+    {
+        return id > AIR && (id == SAND || id == GRAVEL || fallingBlocks.contains(id, data) && fallingBlocksEnabled);
+    }
+}
@@ -23,11 +23,12 @@ package com.extrahardmode.task;
 
 
 import com.extrahardmode.ExtraHardMode;
+import com.extrahardmode.config.ExplosionProfile;
 import com.extrahardmode.config.ExplosionType;
 import com.extrahardmode.config.RootConfig;
-import com.extrahardmode.config.RootNode;
 import com.extrahardmode.module.EntityHelper;
 import com.extrahardmode.module.ExplosionCompatStorage;
+import com.extrahardmode.module.ExplosionSource;
 import org.bukkit.Location;
 import org.bukkit.entity.Entity;
 
@@ -61,9 +62,9 @@ public class CreateExplosionTask implements Runnable
     private final RootConfig CFG;
 
     /**
-     * Instance of a the Entity which caused the Explosion
+     * What caused the Explosion, null for purely visual explosions
      */
-    private Entity explosionCause;
+    private final ExplosionSource explosionCause;
 
 
     /**
@@ -73,15 +74,40 @@ public class CreateExplosionTask implements Runnable
      * @param type     Type that determines size and possible blockdamage or fire of explosion.
      */
     public CreateExplosionTask(ExtraHardMode plugin, Location location, ExplosionType type, Entity entity)
+    {
+        this(plugin, location, type, ExplosionSource.of(entity));
+    }
+
+
+    /**
+     * Constructor for explosions without an entity, which will be attributed to the given source
+     *
+     * @param location - Location to make explosion occur.
+     * @param type     Type that determines size and possible blockdamage or fire of explosion.
+     * @param source   what caused the explosion
+     */
+    public CreateExplosionTask(ExtraHardMode plugin, Location location, ExplosionType type, ExplosionSource source)
     {
         this.location = location;
         this.type = type;
         this.plugin = plugin;
-        this.explosionCause = entity;
+        this.explosionCause = source;
         CFG = plugin.getModuleForClass(RootConfig.class);
     }
 
 
+    /**
+     * Constructor for purely visual explosions
+     *
+     * @param location - Location to make explosion occur.
+     * @param type     Type that determines size and possible blockdamage or fire of explosion.
+     */
+    public CreateExplosionTask(ExtraHardMode plugin, Location location, ExplosionType type)
+    {
+        this(plugin, location, type, (ExplosionSource) null);
+    }
+
+
     @Override
     public void run()
     {
@@ -94,82 +120,10 @@ public class CreateExplosionTask implements Runnable
      */
     void createExplosion(Location loc, ExplosionType type)
     {
-        int power = type.getPowerA();
-        boolean setFire = type.isFireA();
-        boolean damageWorld = type.allowBlockDmgA();
-        String worldName = loc.getWorld().getName();
-
-        final int border = CFG.getInt(RootNode.EXPLOSIONS_Y, loc.getWorld().getName());
-
-        if (loc.getY() <= border)
-        {
-            switch (type)
-            {
-                case CREEPER:
-                    power = CFG.getInt(RootNode.EXPLOSIONS_CREEPERS_BELOW_POWER, worldName);
-                    setFire = CFG.getBoolean(RootNode.EXPLOSIONS_CREEPERS_BELOW_FIRE, worldName);
-                    damageWorld = CFG.getBoolean(RootNode.EXPLOSIONS_CREEPERS_BELOW_WORLD_GRIEF, worldName);
-                    break;
-                case CREEPER_CHARGED:
-                    power = CFG.getInt(RootNode.EXPLOSIONS_CHARGED_CREEPERS_BELOW_POWER, worldName);
-                    setFire = CFG.getBoolean(RootNode.EXPLOSIONS_CHARGED_CREEPERS_BELOW_FIRE, worldName);
-                    damageWorld = CFG.getBoolean(RootNode.EXPLOSIONS_CHARGED_CREEPERS_BELOW_WORLD_GRIEF, worldName);
-                    break;
-                case TNT:
-                    power = CFG.getInt(RootNode.EXPLOSIONS_TNT_BELOW_POWER, worldName);
-                    setFire = CFG.getBoolean(RootNode.EXPLOSIONS_TNT_BELOW_FIRE, worldName);
-                    damageWorld = CFG.getBoolean(RootNode.EXPLOSIONS_TNT_BELOW_WORLD_GRIEF, worldName);
-                    break;
-                case OVERWORLD_BLAZE:
-                    power = CFG.getInt(RootNode.EXPLOSIONS_BLAZE_BELOW_POWER, worldName);
-                    setFire = CFG.getBoolean(RootNode.EXPLOSIONS_BLAZE_BELOW_FIRE, worldName);
-                    damageWorld = CFG.getBoolean(RootNode.EXPLOSIONS_BLAZE_BELOW_WORLD_GRIEF, worldName);
-                    break;
-                case GHAST_FIREBALL:
-                    power = CFG.getInt(RootNode.EXPLOSIONS_GHAST_BELOW_POWER, worldName);
-                    setFire = CFG.getBoolean(RootNode.EXPLOSIONS_GHAST_BELOW_FIRE, worldName);
-                    damageWorld = CFG.getBoolean(RootNode.EXPLOSIONS_GHAST_BELOW_WORLD_GRIEF, worldName);
-                    break;
-                default:
-                    power = type.getPowerB();
-                    setFire = type.isFireB();
-                    damageWorld = type.allowBlockDmgB();
-            }
-        } else if (loc.getY() > border)
-        {
-            switch (type)
-            {
-                case CREEPER:
-                    power = CFG.getInt(RootNode.EXPLOSIONS_CREEPERS_ABOVE_POWER, worldName);
-                    setFire = CFG.getBoolean(RootNode.EXPLOSIONS_CREEPERS_ABOVE_FIRE, worldName);
-                    damageWorld = CFG.getBoolean(RootNode.EXPLOSIONS_CREEPERS_ABOVE_WORLD_GRIEF, worldName);
-                    break;
-                case CREEPER_CHARGED:
-                    power = CFG.getInt(RootNode.EXPLOSIONS_CHARGED_CREEPERS_ABOVE_POWER, worldName);
-                    setFire = CFG.getBoolean(RootNode.EXPLOSIONS_CHARGED_CREEPERS_ABOVE_FIRE, worldName);
-                    damageWorld = CFG.getBoolean(RootNode.EXPLOSIONS_CHARGED_CREEPERS_ABOVE_WORLD_GRIEF, worldName);
-                    break;
-                case TNT:
-                    power = CFG.getInt(RootNode.EXPLOSIONS_TNT_ABOVE_POWER, worldName);
-                    setFire = CFG.getBoolean(RootNode.EXPLOSIONS_TNT_ABOVE_FIRE, worldName);
-                    damageWorld = CFG.getBoolean(RootNode.EXPLOSIONS_TNT_ABOVE_WORLD_GRIEF, worldName);
-                    break;
-                case OVERWORLD_BLAZE:
-                    power = CFG.getInt(RootNode.EXPLOSIONS_BLAZE_ABOVE_POWER, worldName);
-                    setFire = CFG.getBoolean(RootNode.EXPLOSIONS_BLAZE_ABOVE_FIRE, worldName);
-                    damageWorld = CFG.getBoolean(RootNode.EXPLOSIONS_BLAZE_ABOVE_WORLD_GRIEF, worldName);
-                    break;
-                case GHAST_FIREBALL:
-                    power = CFG.getInt(RootNode.EXPLOSIONS_GHAST_ABOVE_POWER, worldName);
-                    setFire = CFG.getBoolean(RootNode.EXPLOSIONS_GHAST_ABOVE_FIRE, worldName);
-                    damageWorld = CFG.getBoolean(RootNode.EXPLOSIONS_GHAST_ABOVE_WORLD_GRIEF, worldName);
-                    break;
-                default:
-                    power = type.getPowerA();
-                    setFire = type.isFireA();
-                    damageWorld = type.allowBlockDmgA();
-            }
-        }
+        final ExplosionProfile profile = CFG.getView(loc.getWorld()).getExplosionProfile(type);
+        final int power = profile.getPower(loc.getY());
+        final boolean setFire = profile.isFire(loc.getY());
+        final boolean damageWorld = profile.isWorldDamage(loc.getY());
 
         //if (validateLocationSafe(loc, type))
         //{
@@ -180,7 +134,8 @@ public class CreateExplosionTask implements Runnable
 
 
         //entity should be ignored so our code doesn't think that it's a regular creeper etc.
-        EntityHelper.flagIgnore(plugin, explosionCause);
+        if (explosionCause != null)
+            EntityHelper.flagIgnore(plugin, explosionCause.getRealEntity());
         loc.getWorld().createExplosion(loc.getX(), loc.getY(), loc.getZ(), power, setFire, damageWorld);
         //}
     }
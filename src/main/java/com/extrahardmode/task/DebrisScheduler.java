@@ -0,0 +1,235 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.task;
+
+
+import com.extrahardmode.config.RootConfig;
+import com.extrahardmode.config.RootNode;
+import com.extrahardmode.features.Explosions;
+import com.extrahardmode.module.UtilityModule;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.entity.FallingBlock;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+
+/**
+ * Spreads the blocks thrown by explosions over several ticks.
+ * <p/>
+ * Every explosion throws a limited number of blocks, the ones closest to a player are picked. Those are queued per
+ * world and only a limited number is launched per tick in each world, blocks that waited too long don't fly at all. A single task launches
+ * the blocks and pushes them away from their explosion once they are in the air.
+ */
+public class DebrisScheduler implements Runnable
+{
+    /**
+     * Ticks a block can wait to be launched, after that the explosion is long over
+     */
+    private static final int MAX_WAIT = 10;
+
+    /**
+     * Ticks between launching a block and pushing it away from the explosion
+     */
+    private static final int SPREAD_DELAY = 2;
+
+    /**
+     * Upper limit of queued blocks
+     */
+    private static final int MAX_QUEUED = 2048;
+
+    private final Explosions explosions;
+
+    private final RootConfig CFG;
+
+    /**
+     * Closest to a player first
+     */
+    private static final Comparator<Debris> BY_PRIORITY = new Comparator<Debris>()
+    {
+        @Override
+        public int compare(Debris o1, Debris o2)
+        {
+            return Double.compare(o1.priority, o2.priority);
+        }
+    };
+
+    /**
+     * World name -> blocks waiting to be launched in that world, closest to a player first
+     */
+    private final Map<String, PriorityQueue<Debris>> queues = new HashMap<String, PriorityQueue<Debris>>();
+
+    /**
+     * Blocks waiting in all worlds
+     */
+    private int queuedCount = 0;
+
+    /**
+     * Blocks in the air waiting to be pushed away, in the order they were launched
+     */
+    private final ArrayDeque<Debris> launched = new ArrayDeque<Debris>();
+
+    private long currentTick = 0;
+
+
+    /**
+     * Constructor.
+     *
+     * @param explosions - Explosions feature which launches the blocks.
+     * @param CFG        - Config Reference.
+     */
+    public DebrisScheduler(Explosions explosions, RootConfig CFG)
+    {
+        this.explosions = explosions;
+        this.CFG = CFG;
+    }
+
+
+    /**
+     * Queue the blocks an explosion throws
+     *
+     * @param center    center of the explosion
+     * @param debris    blocks that could be thrown
+     * @param upVel     how fast to propel upwards
+     * @param spreadVel how fast to propel on horizontal axis
+     */
+    public void submit(Location center, List<Debris> debris, double upVel, double spreadVel)
+    {
+        if (debris.isEmpty())
+            return;
+        final List<Player> players = center.getWorld().getPlayers();
+        for (Debris block : debris)
+        {
+            double closest = Double.MAX_VALUE;
+            for (Player player : players)
+                closest = Math.min(closest, player.getLocation().distanceSquared(block.location));
+            block.priority = closest;
+        }
+        final String worldName = center.getWorld().getName();
+        final int perExplosion = CFG.getInt(RootNode.EXPLOSIONS_FLYING_BLOCKS_PER_EXPLOSION, worldName);
+        if (perExplosion > 0 && debris.size() > perExplosion)
+        {
+            Collections.sort(debris, BY_PRIORITY);
+            debris = debris.subList(0, perExplosion);
+        }
+
+        PriorityQueue<Debris> queue = queues.get(worldName);
+        if (queue == null)
+        {
+            queue = new PriorityQueue<Debris>(64, BY_PRIORITY);
+            queues.put(worldName, queue);
+        }
+        for (Debris block : debris)
+        {
+            if (queuedCount >= MAX_QUEUED)
+                break;
+            block.center = center;
+            block.upVel = upVel;
+            block.spreadVel = spreadVel;
+            block.tick = currentTick;
+            queue.add(block);
+            queuedCount++;
+        }
+    }
+
+
+    @Override
+    public void run()
+    {
+        currentTick++;
+
+        Debris block;
+        while ((block = launched.peek()) != null && currentTick - block.tick >= SPREAD_DELAY)
+        {
+            launched.poll();
+            if (block.fall.isValid())
+                UtilityModule.moveAway(block.fall, block.center, block.spreadVel);
+        }
+
+        final Iterator<Map.Entry<String, PriorityQueue<Debris>>> iter = queues.entrySet().iterator();
+        while (iter.hasNext())
+        {
+            final Map.Entry<String, PriorityQueue<Debris>> entry = iter.next();
+            final PriorityQueue<Debris> queue = entry.getValue();
+            final int perTick = CFG.getInt(RootNode.EXPLOSIONS_FLYING_BLOCKS_PER_TICK, entry.getKey());
+            int launchedThisTick = 0;
+            while ((block = queue.peek()) != null && (perTick <= 0 || launchedThisTick < perTick))
+            {
+                queue.poll();
+                queuedCount--;
+                if (currentTick - block.tick > MAX_WAIT)
+                    continue;
+                block.fall = explosions.launch(block.location, block.type, block.data, block.upVel);
+                if (block.fall != null)
+                {
+                    block.tick = currentTick;
+                    launched.add(block);
+                    launchedThisTick++;
+                }
+            }
+            if (queue.isEmpty())
+                iter.remove();
+        }
+    }
+
+
+    public void clear()
+    {
+        queues.clear();
+        queuedCount = 0;
+        launched.clear();
+    }
+
+
+    /**
+     * A block that can be thrown by an explosion
+     */
+    public static class Debris
+    {
+        private final Location location;
+        private final Material type;
+        private final byte data;
+
+        private Location center;
+        private double upVel, spreadVel;
+
+        /**
+         * Distance to the closest player squared
+         */
+        private double priority;
+
+        /**
+         * Tick the block was queued or launched in
+         */
+        private long tick;
+
+        private FallingBlock fall;
+
+
+        public Debris(Location location, Material type, byte data)
+        {
+            this.location = location;
+            this.type = type;
+            this.data = data;
+        }
+    }
+}
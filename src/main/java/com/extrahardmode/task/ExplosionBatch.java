@@ -0,0 +1,146 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.task;
+
+
+import com.extrahardmode.ExtraHardMode;
+import com.extrahardmode.features.Explosions;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.*;
+
+/**
+ * Explosions close to each other in space and time whose flying blocks and cave-ins are processed together.
+ * <p/>
+ * While the batch is open the blocks destroyed by its explosions are collected without duplicates. When it runs, the
+ * flying blocks are picked from all of them at once and the crater is solved once.
+ */
+public class ExplosionBatch implements Runnable
+{
+    /**
+     * Plugin instance.
+     */
+    private final ExtraHardMode plugin;
+
+    /**
+     * Center of the first explosion, explosions have to be within the radius of it
+     */
+    private final Location origin;
+
+    private final int radiusSquared;
+
+    /**
+     * Centers of all explosions in this batch
+     */
+    private final List<Location> centers = new ArrayList<Location>();
+
+    /**
+     * Packed position -> {x, y, z, id, data, index of the center} of a destroyed block
+     */
+    private final Map<Long, int[]> destroyed = new LinkedHashMap<Long, int[]>();
+
+    /**
+     * Explosions can't be added once the batch ran
+     */
+    private boolean closed = false;
+
+
+    /**
+     * Constructor.
+     *
+     * @param plugin - Plugin instance.
+     * @param origin - Center of the first explosion.
+     * @param radius - How far explosions can be from the first one.
+     */
+    public ExplosionBatch(ExtraHardMode plugin, Location origin, int radius)
+    {
+        this.plugin = plugin;
+        this.origin = origin.clone();
+        this.radiusSquared = radius * radius;
+    }
+
+
+    /**
+     * Can an explosion at this location be added to this batch
+     */
+    public boolean isInRange(Location center)
+    {
+        return !closed && center.getWorld() == origin.getWorld() && center.distanceSquared(origin) <= radiusSquared;
+    }
+
+
+    /**
+     * Add the blocks of an explosion, blocks which have been destroyed by an earlier explosion of this batch are
+     * ignored. Has to be called before the blocks are destroyed, as their type is remembered.
+     *
+     * @param center - Center of the explosion.
+     * @param blocks - Blocks destroyed by the explosion.
+     */
+    public void add(Location center, Collection<Block> blocks)
+    {
+        final int centerIndex = centers.size();
+        centers.add(center.clone());
+        for (Block block : blocks)
+        {
+            final long key = BlockPhysicsQueue.pack(block.getX(), block.getY(), block.getZ());
+            if (!destroyed.containsKey(key))
+                destroyed.put(key, new int[]{block.getX(), block.getY(), block.getZ(), block.getTypeId(), block.getData(), centerIndex});
+        }
+    }
+
+
+    @Override
+    public void run()
+    {
+        closed = true;
+        plugin.getModuleForClass(Explosions.class).processBatch(this);
+    }
+
+
+    public World getWorld()
+    {
+        return origin.getWorld();
+    }
+
+
+    public List<Location> getCenters()
+    {
+        return centers;
+    }
+
+
+    /**
+     * @return {x, y, z, id, data, index of the center} of every destroyed block
+     */
+    public Collection<int[]> getDestroyed()
+    {
+        return destroyed.values();
+    }
+
+
+    public boolean isClosed()
+    {
+        return closed;
+    }
+}
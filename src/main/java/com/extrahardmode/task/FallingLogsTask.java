@@ -24,19 +24,24 @@ package com.extrahardmode.task;
 
 import com.extrahardmode.ExtraHardMode;
 import com.extrahardmode.module.BlockModule;
+import com.extrahardmode.module.RegionQuery;
 import org.apache.commons.lang.Validate;
-import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
+import org.bukkit.scheduler.BukkitRunnable;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Gradually let's Logs which have been marked as loose fall down.
+ * Gradually let's Logs which have been marked as loose fall down. One task handles all loose logs of a tree.
  */
-public class FallingLogsTask implements Runnable
+public class FallingLogsTask extends BukkitRunnable
 {
+    private static final int LEAVES = 18, LEAVES_2 = 161;
+
     /**
      * Reference to the plugin using this class
      */
@@ -48,102 +53,159 @@ public class FallingLogsTask implements Runnable
     private final BlockModule blockModule;
 
     /**
-     * Block to apply physics to
+     * Tick -> loose logs which start falling at that tick
      */
-    private final Block block;
+    private final Map<Integer, List<Block>> loosen = new HashMap<Integer, List<Block>>();
+
+    /**
+     * Tick -> logs to turn into FallingBlocks at that tick
+     */
+    private final Map<Integer, List<Block>> drops = new HashMap<Integer, List<Block>>();
+
+    /**
+     * Ticks since the task has been started
+     */
+    private int tick = 0;
 
 
     /**
      * Constructor
      *
-     * @param plugin reference to the plugin
-     * @param block  to apply physics to
+     * @param plugin    reference to the plugin
+     * @param looseLogs logs to apply physics to
+     * @param spread    how many ticks to spread the logs over so they don't fall at once
      */
-
-    public FallingLogsTask(ExtraHardMode plugin, Block block)
+    public FallingLogsTask(ExtraHardMode plugin, List<Block> looseLogs, int spread)
     {
-        Validate.notNull(block, "Block can't be null");
+        Validate.notNull(looseLogs, "Logs can't be null");
         Validate.notNull(plugin, "Plugin can't be null");
 
-        this.block = block;
         this.plugin = plugin;
         blockModule = plugin.getModuleForClass(BlockModule.class);
+        for (Block log : looseLogs)
+            schedule(loosen, spread > 0 ? plugin.getRandom().nextInt(spread) : 0, log);
+    }
+
+
+    private static void schedule(Map<Integer, List<Block>> schedule, int tick, Block block)
+    {
+        List<Block> blocks = schedule.get(tick);
+        if (blocks == null)
+        {
+            blocks = new ArrayList<Block>();
+            schedule.put(tick, blocks);
+        }
+        blocks.add(block);
     }
 
 
     @Override
     public void run()
     {
-        if (block != null)
+        List<Block> loose = loosen.remove(tick);
+        if (loose != null)
+            for (Block block : loose)
+                loosen(block);
+
+        List<Block> falling = drops.remove(tick);
+        if (falling != null)
+            for (Block block : falling)
+                blockModule.applyPhysics(block, true);
+
+        tick++;
+        if (loosen.isEmpty() && drops.isEmpty())
+            cancel();
+    }
+
+
+    /**
+     * Clear the area below a loose log of leaves and let it and the logs below it fall
+     *
+     * @param block loose log
+     */
+    private void loosen(Block block)
+    {
+        /* Prevent wooden structures near trees from being affected*/
+        if (!isBetweenLeaves(block))
+            return;
+
+        Block below = block;
+        List<Block> looseLogs = new ArrayList<Block>();
+        List<Block> tempBlocks = new ArrayList<Block>();
+        looseLogs.add(block);
+        checkBelow:
+        for (int i = 0; below.getY() > 0; i++)
         {
-            /* Prevent wooden structures near trees from being affected*/
-            if (blockModule.getBlocksInArea(block.getLocation(), 2, 1, Material.LEAVES).length > 3 ||
-                    blockModule.getBlocksInArea(block.getLocation(), 2, 1, Material.LEAVES_2).length > 3)
+            below = below.getRelative(BlockFace.DOWN);
+            switch (below.getType())
             {
-                //Clear the area below of leaves
-                Block below = block;
-                List<Block> looseLogs = new ArrayList<Block>();
-                List<Block> tempBlocks = new ArrayList<Block>();
-                looseLogs.add(block);
-                checkBelow:
-                for (int i = 0; below.getY() > 0; i++)
+                case AIR:
+                {
+                    //go one down
+                    //All blocks above this can fall now that there is an air block
+                    looseLogs.addAll(tempBlocks);
+                    tempBlocks.clear();
+                    break;
+                }
+                case LEAVES:
+                case LEAVES_2:
+                {
+                    below.breakNaturally();
+                    break;
+                }
+                case LOG:
+                case LOG_2:
                 {
-                    below = below.getRelative(BlockFace.DOWN);
-                    switch (below.getType())
+                    //Prevent Logs on adjacent sides (Jungle Tree) from turning to FallingBlocks and some of them turning into items
+                    switch (below.getRelative(BlockFace.DOWN).getType())
                     {
                         case AIR:
-                        {
-                            //go one down
-                            //All blocks above this can fall now that there is an air block
-                            looseLogs.addAll(tempBlocks);
-                            tempBlocks.clear();
-                            break;
-                        }
                         case LEAVES:
-                        case LEAVES_2:
-                        {
-                            below.breakNaturally();
-                            break;
-                        }
-                        case LOG:
-                        case LOG_2:
-                        {
-                            //Prevent Logs on adjacent sides (Jungle Tree) from turning to FallingBlocks and some of them turning into items
-                            switch (below.getRelative(BlockFace.DOWN).getType())
-                            {
-                                case AIR:
-                                case LEAVES:
-                                    tempBlocks.add(below);
-                            }
-                            break;
-                        }
-                        default: //we hit the block where the FallingBlock will land
-                        {
-                            if (blockModule.breaksFallingBlock(below.getType()))
-                            {
-                                below.breakNaturally();
-                            } else
-                            {
-                                break checkBelow;
-                            }
-                        }
+                            tempBlocks.add(below);
                     }
+                    break;
                 }
-
-                for (int i = 0; i < looseLogs.size(); i++)
+                default: //we hit the block where the FallingBlock will land
                 {
-                    final Block looseLog = looseLogs.get(i);
-                    plugin.getServer().getScheduler().runTaskLater(plugin, new Runnable()
+                    if (blockModule.breaksFallingBlock(below.getType()))
                     {
-                        @Override
-                        public void run()
-                        {
-                            blockModule.applyPhysics(looseLog, true);
-                        }
-                    }, i /*delay to prevent FallingBlock collision*/);
-
+                        below.breakNaturally();
+                    } else
+                    {
+                        break checkBelow;
+                    }
                 }
             }
         }
+
+        for (int i = 0; i < looseLogs.size(); i++)
+            schedule(drops, tick + i /*delay to prevent FallingBlock collision*/, looseLogs.get(i));
+    }
+
+
+    /**
+     * A log of a tree has more than three leaves of one kind around it, on its level or the one above
+     *
+     * @param block log
+     *
+     * @return if enough leaves are around the log
+     */
+    private static boolean isBetweenLeaves(Block block)
+    {
+        //leaves, leaves_2
+        final int[] leaves = new int[2];
+        RegionQuery.scan(block.getWorld(), block.getX(), block.getY(), block.getZ(), 1, 0, 1, RegionQuery.Shape.CUBOID, new RegionQuery.BlockVisitor()
+        {
+            @Override
+            public boolean visit(int x, int y, int z, int typeId)
+            {
+                if (typeId == LEAVES)
+                    leaves[0]++;
+                else if (typeId == LEAVES_2)
+                    leaves[1]++;
+                return true;
+            }
+        });
+        return leaves[0] > 3 || leaves[1] > 3;
     }
-}
\ No newline at end of file
+}
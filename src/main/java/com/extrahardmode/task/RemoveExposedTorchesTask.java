@@ -26,8 +26,10 @@ package com.extrahardmode.task;
 import com.extrahardmode.ExtraHardMode;
 import com.extrahardmode.config.RootConfig;
 import com.extrahardmode.config.RootNode;
+import com.extrahardmode.module.RegionQuery;
 import org.bukkit.Chunk;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 
@@ -92,69 +94,77 @@ public class RemoveExposedTorchesTask implements Runnable
 
         if (this.chunk.getWorld().hasStorm() || force)
         {
+            final World world = chunk.getWorld();
+            /* we go down until we hit something which isn't AIR */
+            final int[] hitY = new int[1];
+            final RegionQuery.BlockVisitor firstNonAir = new RegionQuery.BlockVisitor()
+            {
+                @Override
+                public boolean visit(int x, int y, int z, int typeId)
+                {
+                    hitY[0] = y;
+                    return typeId == 0;
+                }
+            };
+
             for (int x = 0; x < 16; x++)
             {
                 for (int z = 0; z < 16; z++)
                 {
+                    if (RegionQuery.scanDown(world, (chunk.getX() << 4) + x, (chunk.getZ() << 4) + z, world.getMaxHeight() - 1, 1, firstNonAir))
+                        continue; //only air in this column
+
                     /* Biome is saved on a per column basis */
-                    loopDown:
-                    for (int y = chunk.getWorld().getMaxHeight() - 1; y > 0; y--)
-                    {
-                        Block block = chunk.getBlock(x, y, z);
-                        double temperature = block.getTemperature();
-                        Material blockType = block.getType();
+                    Block block = chunk.getBlock(x, hitY[0], z);
+                    double temperature = block.getTemperature();
+                    Material blockType = block.getType();
 
-                        switch (blockType)
+                    switch (blockType)
+                    {
+                        case TORCH:
                         {
-                            case AIR: /* we continue down until we hit something which isn't AIR */
-                                continue loopDown;
-                            case TORCH:
+                            if (rainBreaksTorches && temperature < 1.0) //excludes warmer biomes like mesa and desert in which no rain falls
                             {
-                                if (rainBreaksTorches && temperature < 1.0) //excludes warmer biomes like mesa and desert in which no rain falls
+                                /* Reduce lag by torches lying on the ground */
+                                if (plugin.getRandom().nextInt(5) == 1)
                                 {
-                                    /* Reduce lag by torches lying on the ground */
-                                    if (plugin.getRandom().nextInt(5) == 1)
-                                    {
-                                        block.breakNaturally();
-                                    } else
-                                    {
-                                        block.setType(Material.AIR);
-                                    }
+                                    block.breakNaturally();
+                                } else
+                                {
+                                    block.setType(Material.AIR);
                                 }
-                                break loopDown;
                             }
-                            case CROPS:
-                            case MELON_STEM:
-                            case CARROT:
-                            case PUMPKIN_STEM:
-                            case POTATO:
-                            case RED_ROSE:
-                            case YELLOW_FLOWER:
-                            case LONG_GRASS:
+                            break;
+                        }
+                        case CROPS:
+                        case MELON_STEM:
+                        case CARROT:
+                        case PUMPKIN_STEM:
+                        case POTATO:
+                        case RED_ROSE:
+                        case YELLOW_FLOWER:
+                        case LONG_GRASS:
+                        {
+                            if (snowBreaksCrops && temperature <= 0.15) //cold biomes in which snow falls
                             {
-                                if (snowBreaksCrops && temperature <= 0.15) //cold biomes in which snow falls
+                                if (plugin.getRandom().nextInt(5) == 1)
+                                    block.breakNaturally();
+                                //Snow can't be placed if its tilled soil
+                                if (block.getRelative(BlockFace.DOWN).getType() == Material.SOIL)
+                                    block.getRelative(BlockFace.DOWN).setType(Material.DIRT);
+                                block.setType(Material.SNOW);
+                                if (plugin.getRandom().nextBoolean())
                                 {
-                                    if (plugin.getRandom().nextInt(5) == 1)
-                                        block.breakNaturally();
-                                    //Snow can't be placed if its tilled soil
-                                    if (block.getRelative(BlockFace.DOWN).getType() == Material.SOIL)
-                                        block.getRelative(BlockFace.DOWN).setType(Material.DIRT);
-                                    block.setType(Material.SNOW);
-                                    if (plugin.getRandom().nextBoolean())
-                                    {
-                                        block.setData((byte) 1);
-                                    } else
-                                    {
-                                        block.setData((byte) 2);
-                                    }
+                                    block.setData((byte) 1);
+                                } else
+                                {
+                                    block.setData((byte) 2);
                                 }
-                                break loopDown;
-                            }
-                            default: /* Anything which isn't AIR will protect torches and Crops */
-                            {
-                                break loopDown;
                             }
+                            break;
                         }
+                        default: /* Anything which isn't AIR will protect torches and Crops */
+                            break;
                     }
                 }
             }
@@ -0,0 +1,312 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.task;
+
+
+import com.extrahardmode.ExtraHardMode;
+import com.extrahardmode.config.RootConfig;
+import com.extrahardmode.config.RootNode;
+import com.extrahardmode.module.BlockModule;
+import com.extrahardmode.service.config.customtypes.BlockTypeList;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+import java.util.*;
+
+/**
+ * Finds the blocks that lose their support after a block has been broken or placed.
+ * <p/>
+ * The chunks around the disturbance are copied on the main thread, the search runs on a worker thread on the copies
+ * and only the blocks that should fall are handed back to the main thread. This follows the same rules as
+ * {@link BlockPhysicsCheckTask}, but instead of scheduling a task for every neighbor the whole cave-in is simulated at
+ * once. Most disturbances don't let anything fall, the blocks next to the disturbance are checked in place first and
+ * the chunks are only copied if one of them falls.
+ */
+public class SupportAnalysisTask implements Runnable
+{
+    /**
+     * Upper limit of blocks a single analysis can drop
+     */
+    private static final int MAX_FALLING = 4096;
+
+    private static final int AIR = 0, TORCH = 50, SAND = 12, GRAVEL = 13;
+
+    /**
+     * Plugin instance.
+     */
+    private final ExtraHardMode plugin;
+
+    /**
+     * World of the disturbance
+     */
+    private final World world;
+
+    /**
+     * Chunk key -> copy of the chunk
+     */
+    private final Map<Long, ChunkSnapshot> chunks;
+
+    /**
+     * Origin of the disturbance
+     */
+    private final int x, y, z;
+
+    /**
+     * Recursion count.
+     */
+    private final int recursionCount;
+
+    /**
+     * Will the the adjacent blocks be checked no matter if the center falls or not?
+     */
+    private final boolean force;
+
+    /**
+     * Additional blocks which fall, and if they are enabled
+     */
+    private final BlockTypeList fallingBlocks;
+    private final boolean fallingBlocksEnabled;
+
+
+    private SupportAnalysisTask(ExtraHardMode plugin, Block block, Map<Long, ChunkSnapshot> chunks, int recursionCount, boolean force,
+                                BlockTypeList fallingBlocks, boolean fallingBlocksEnabled)
+    {
+        this.plugin = plugin;
+        this.world = block.getWorld();
+        this.chunks = chunks;
+        this.x = block.getX();
+        this.y = block.getY();
+        this.z = block.getZ();
+        this.recursionCount = recursionCount;
+        this.force = force;
+        this.fallingBlocks = fallingBlocks;
+        this.fallingBlocksEnabled = fallingBlocksEnabled;
+    }
+
+
+    /**
+     * Copy the chunks around the block and start the analysis on a worker thread. Has to be called on the main thread.
+     *
+     * @param plugin         - Plugin instance.
+     * @param block          - Block that has been disturbed.
+     * @param recursionCount - How far blocks can be affected.
+     * @param force          - Whether to check the adjacent blocks even if the block itself doesn't fall
+     */
+    public static void start(ExtraHardMode plugin, Block block, int recursionCount, boolean force)
+    {
+        final RootConfig CFG = plugin.getModuleForClass(RootConfig.class);
+        final World world = block.getWorld();
+        final BlockTypeList fallingBlocks = CFG.getBlocktypeList(RootNode.MORE_FALLING_BLOCKS, world.getName());
+        final boolean fallingBlocksEnabled = CFG.getBoolean(RootNode.MORE_FALLING_BLOCKS_ENABLE, world.getName());
+        //the analysis only spreads from blocks that fall, if none of the first checks falls nothing will
+        if (!startsCaveIn(world, block.getX(), block.getY(), block.getZ(), fallingBlocks, fallingBlocksEnabled))
+            return;
+
+        final int radius = Math.max(0, recursionCount) + 1;
+
+        Map<Long, ChunkSnapshot> chunks = new HashMap<Long, ChunkSnapshot>();
+        for (int cx = (block.getX() - radius) >> 4; cx <= (block.getX() + radius) >> 4; cx++)
+            for (int cz = (block.getZ() - radius) >> 4; cz <= (block.getZ() + radius) >> 4; cz++)
+                if (world.isChunkLoaded(cx, cz))
+                    chunks.put(chunkKey(cx, cz), world.getChunkAt(cx, cz).getChunkSnapshot());
+
+        SupportAnalysisTask task = new SupportAnalysisTask(plugin, block, chunks, recursionCount, force, fallingBlocks, fallingBlocksEnabled);
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task);
+    }
+
+
+    /**
+     * Check the blocks a forced check looks at first in the world itself: the block, the blocks below it and its
+     * neighbors. Has to be called on the main thread.
+     *
+     * @return if any of them falls
+     */
+    private static boolean startsCaveIn(World world, int x, int y, int z, BlockTypeList fallingBlocks, boolean fallingBlocksEnabled)
+    {
+        if (fallsInWorld(world, x, y, z, fallingBlocks, fallingBlocksEnabled))
+            return true;
+        for (int down = 1; down <= 6; down++)
+            if (fallsInWorld(world, x, y - down, z, fallingBlocks, fallingBlocksEnabled))
+                return true;
+        return fallsInWorld(world, x, y + 1, z, fallingBlocks, fallingBlocksEnabled)
+                || fallsInWorld(world, x + 1, y, z, fallingBlocks, fallingBlocksEnabled)
+                || fallsInWorld(world, x - 1, y, z, fallingBlocks, fallingBlocksEnabled)
+                || fallsInWorld(world, x, y, z + 1, fallingBlocks, fallingBlocksEnabled)
+                || fallsInWorld(world, x, y, z - 1, fallingBlocks, fallingBlocksEnabled);
+    }
+
+
+    private static boolean fallsInWorld(World world, int x, int y, int z, BlockTypeList fallingBlocks, boolean fallingBlocksEnabled)
+    {
+        if (y < 1 || y > 255 || !world.isChunkLoaded(x >> 4, z >> 4))
+            return false;
+        final int id = world.getBlockTypeIdAt(x, y, z);
+        return id > AIR && canFallInto(world.getBlockTypeIdAt(x, y - 1, z))
+                && isFalling(id, world.getBlockAt(x, y, z).getData(), fallingBlocks, fallingBlocksEnabled);
+    }
+
+
+    @Override
+    public void run()
+    {
+        final List<int[]> falling = analyze();
+        if (!falling.isEmpty())
+            plugin.getServer().getScheduler().runTask(plugin, new DropTask(falling));
+    }
+
+
+    /**
+     * Simulate the checks {@link BlockPhysicsCheckTask} would do on the copied chunks
+     *
+     * @return positions of all blocks that fall, lowest first
+     */
+    private List<int[]> analyze()
+    {
+        //Blocks that fell are air from then on
+        final Set<Long> fallen = new HashSet<Long>();
+        final List<int[]> falling = new ArrayList<int[]>();
+        final ArrayDeque<int[]> open = new ArrayDeque<int[]>();
+        open.add(new int[]{x, y, z, recursionCount, force ? 1 : 0});
+
+        int[] check;
+        while ((check = open.poll()) != null && falling.size() < MAX_FALLING)
+        {
+            final int cx = check[0], cy = check[1], cz = check[2], recursion = check[3];
+            final boolean forced = check[4] == 1;
+            final long key = BlockPhysicsQueue.pack(cx, cy, cz);
+            if (fallen.contains(key))
+                continue;
+
+            final int id = getTypeId(cx, cy, cz, fallen);
+            boolean fall = false;
+            if (id > AIR && canFallInto(getTypeId(cx, cy - 1, cz, fallen)) && isFalling(id, getData(cx, cy, cz)))
+            {
+                fallen.add(key);
+                falling.add(new int[]{cx, cy, cz});
+                fall = true;
+            }
+
+            if ((fall || forced) && recursion >= 0)
+            {
+                if (forced)
+                    for (int down = 1; down <= 6; down++)
+                        open.add(new int[]{cx, cy - down, cz, recursion - 1, 0});
+                open.add(new int[]{cx, cy + 1, cz, recursion - 1, 0});
+                open.add(new int[]{cx, cy - 1, cz, recursion - 1, 0});
+                open.add(new int[]{cx + 1, cy, cz, recursion - 1, 0});
+                open.add(new int[]{cx - 1, cy, cz, recursion - 1, 0});
+                open.add(new int[]{cx, cy, cz - 1, recursion - 1, 0});
+                open.add(new int[]{cx, cy, cz + 1, recursion - 1, 0});
+            }
+        }
+
+        Collections.sort(falling, new Comparator<int[]>()
+        {
+            @Override
+            public int compare(int[] o1, int[] o2)
+            {
+                return o1[1] < o2[1] ? -1 : (o1[1] == o2[1] ? 0 : 1);
+            }
+        });
+        return falling;
+    }
+
+
+    /**
+     * @return the id of the block in the copied chunks, -1 if the chunk hasn't been copied
+     */
+    private int getTypeId(int bx, int by, int bz, Set<Long> fallen)
+    {
+        if (by < 0)
+            return -1;
+        if (by > 255 || fallen.contains(BlockPhysicsQueue.pack(bx, by, bz)))
+            return AIR;
+        ChunkSnapshot chunk = chunks.get(chunkKey(bx >> 4, bz >> 4));
+        return chunk != null ? chunk.getBlockTypeId(bx & 15, by, bz & 15) : -1;
+    }
+
+
+    private byte getData(int bx, int by, int bz)
+    {
+        ChunkSnapshot chunk = chunks.get(chunkKey(bx >> 4, bz >> 4));
+        return chunk != null && by >= 0 && by <= 255 ? (byte) chunk.getBlockData(bx & 15, by, bz & 15) : 0;
+    }
+
+
+    /**
+     * Air, liquids and torches don't support a block
+     */
+    private static boolean canFallInto(int id)
+    {
+        return id == AIR || (id >= 8 && id <= 11) || id == TORCH;
+    }
+
+
+    private boolean isFalling(int id, byte data)
+    {
+        return isFalling(id, data, fallingBlocks, fallingBlocksEnabled);
+    }
+
+
+    private static boolean isFalling(int id, byte data, BlockTypeList fallingBlocks, boolean fallingBlocksEnabled)
+    {
+        return id == SAND || id == GRAVEL || fallingBlocks.contains(id, data) && fallingBlocksEnabled;
+    }
+
+
+    private static long chunkKey(int cx, int cz)
+    {
+        return (long) cx << 32 | cz & 0xFFFFFFFFL;
+    }
+
+
+    /**
+     * Drops the blocks found by the analysis, runs on the main thread
+     */
+    private class DropTask implements Runnable
+    {
+        private final List<int[]> falling;
+
+
+        private DropTask(List<int[]> falling)
+        {
+            this.falling = falling;
+        }
+
+
+        @Override
+        public void run()
+        {
+            BlockModule module = plugin.getModuleForClass(BlockModule.class);
+            for (int[] pos : falling)
+            {
+                //The world might have changed since the chunks were copied
+                Block block = world.getBlockAt(pos[0], pos[1], pos[2]);
+                Block below = block.getRelative(BlockFace.DOWN);
+                if (block.getTypeId() != AIR && canFallInto(below.getTypeId()) && isFalling(block.getTypeId(), block.getData()))
+                    module.applyPhysics(block, true);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is part of
+ * ExtraHardMode Server Plugin for Minecraft
+ *
+ * Copyright (C) 2012 Ryan Hamshire
+ * Copyright (C) 2013 Diemex
+ *
+ * ExtraHardMode is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ExtraHardMode is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero Public License
+ * along with ExtraHardMode.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.extrahardmode.config;
+
+
+import com.extrahardmode.service.config.ConfigNode;
+import com.extrahardmode.service.config.Mode;
+import com.extrahardmode.service.config.customtypes.BlockRelationsList;
+import com.extrahardmode.service.config.customtypes.BlockType;
+import com.extrahardmode.service.config.customtypes.BlockTypeList;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writing and reading configs from the binary cache
+ */
+public class TestConfigCache
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ConfigNode[] nodes = {RootNode.MODE, RootNode.WORLDS, RootNode.WEAK_FOOD_CROPS, RootNode.FALLING_BLOCKS_MAX_AGE,
+            RootNode.ENHANCED_DMG_FALL_MULT, RootNode.SUPER_HARD_BLOCKS, RootNode.SUPER_HARD_STONE_STONE_BLOCKS};
+
+    private File configFile;
+
+    private File cacheFile;
+
+
+    @Before
+    public void setUp() throws IOException
+    {
+        configFile = folder.newFile("config.yml");
+        write(configFile, "ExtraHardMode:\n  Enabled Worlds:\n  - world\n");
+        cacheFile = ConfigCache.getCacheFile(new File(folder.getRoot(), "cache"), configFile);
+    }
+
+
+    private static void write(File file, String content) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(content.getBytes("UTF-8"));
+        } finally
+        {
+            out.close();
+        }
+    }
+
+
+    private EHMConfig createConfig()
+    {
+        BlockTypeList hardBlocks = new BlockTypeList();
+        hardBlocks.add(new BlockType(1, (short) 0));
+        hardBlocks.add(new BlockType(98));
+        BlockRelationsList stoneBlocks = new BlockRelationsList();
+        stoneBlocks.add(new BlockType(1, (short) 0), new BlockType(4));
+
+        Map<ConfigNode, Object> loaded = new HashMap<ConfigNode, Object>();
+        loaded.put(RootNode.MODE, "MAIN");
+        loaded.put(RootNode.WORLDS, Arrays.asList("world", "world_nether"));
+        loaded.put(RootNode.WEAK_FOOD_CROPS, false);
+        loaded.put(RootNode.FALLING_BLOCKS_MAX_AGE, 123);
+        loaded.put(RootNode.ENHANCED_DMG_FALL_MULT, 2.5);
+        loaded.put(RootNode.SUPER_HARD_BLOCKS, hardBlocks);
+        loaded.put(RootNode.SUPER_HARD_STONE_STONE_BLOCKS, stoneBlocks);
+        Set<ConfigNode> found = new HashSet<ConfigNode>(Arrays.asList(RootNode.WORLDS, RootNode.WEAK_FOOD_CROPS));
+
+        EHMConfig config = new EHMConfig(null, configFile);
+        config.registerNodes(nodes);
+        config.restore(Mode.MAIN, Arrays.asList("world", "world_nether"), true, false, true, loaded, found);
+        return config;
+    }
+
+
+    @Test
+    public void roundTrip()
+    {
+        EHMConfig written = createConfig();
+        ConfigCache.write(written, configFile, cacheFile, nodes);
+        assertTrue(cacheFile.exists());
+
+        EHMConfig read = ConfigCache.read(configFile, cacheFile, nodes);
+        assertNotNull(read);
+        assertEquals(Mode.MAIN, read.getMode());
+        assertEquals(new ArrayList<String>(written.getWorlds()), new ArrayList<String>(read.getWorlds()));
+        assertTrue(read.printHeader());
+        assertFalse(read.printComments());
+        assertTrue(read.isValid());
+        assertEquals(written.getLoadedNodes(), read.getLoadedNodes());
+        assertEquals(written.getFoundNodes(), read.getFoundNodes());
+    }
+
+
+    @Test
+    public void changedYmlIsRejected() throws IOException
+    {
+        ConfigCache.write(createConfig(), configFile, cacheFile, nodes);
+        write(configFile, "ExtraHardMode:\n  Enabled Worlds:\n  - other_world\n");
+        assertNull(ConfigCache.read(configFile, cacheFile, nodes));
+    }
+
+
+    @Test
+    public void otherNodesAreRejected()
+    {
+        ConfigCache.write(createConfig(), configFile, cacheFile, nodes);
+        ConfigNode[] updated = Arrays.copyOf(nodes, nodes.length + 1);
+        updated[nodes.length] = RootNode.ENHANCED_DMG_LAVA_MULT;
+        assertNull("fingerprint changed", ConfigCache.read(configFile, cacheFile, updated));
+    }
+
+
+    @Test
+    public void otherFormatVersionIsRejected() throws IOException
+    {
+        ConfigCache.write(createConfig(), configFile, cacheFile, nodes);
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        try
+        {
+            //magic, then the version
+            file.seek(4);
+            int version = file.readInt();
+            file.seek(4);
+            file.writeInt(version + 1);
+        } finally
+        {
+            file.close();
+        }
+        assertNull(ConfigCache.read(configFile, cacheFile, nodes));
+    }
+
+
+    @Test
+    public void truncatedCacheIsRejected() throws IOException
+    {
+        ConfigCache.write(createConfig(), configFile, cacheFile, nodes);
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        try
+        {
+            file.setLength(file.length() - 5);
+        } finally
+        {
+            file.close();
+        }
+        assertNull(ConfigCache.read(configFile, cacheFile, nodes));
+    }
+
+
+    @Test
+    public void missingCache()
+    {
+        assertNull(ConfigCache.read(configFile, cacheFile, nodes));
+    }
+}
@@ -24,6 +24,8 @@ package com.extrahardmode.config;
 
 import com.extrahardmode.ExtraHardMode;
 import com.extrahardmode.mocks.MockExtraHardMode;
+import com.extrahardmode.service.config.ConfigNode;
+import com.extrahardmode.service.config.ConfigSnapshot;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -31,6 +33,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -98,6 +101,51 @@ public class TestRootConfig
     }*/
 
 
+    /**
+     * The compiled snapshot has to return the same values as the table
+     */
+    @Test
+    public void testCompiledSnapshot()
+    {
+        cfg.compile(RootNode.values());
+        assertTrue(cfg.getSnapshot() != null);
+
+        assertEquals(false, cfg.getBoolean(RootNode.DONT_MOVE_WATER_SOURCE_BLOCKS, "pvp"));
+        assertEquals(true, cfg.getBoolean(RootNode.WEAK_FOOD_CROPS, "miningWorld"));
+        assertEquals(false, cfg.getBoolean(RootNode.ALWAYS_ANGRY_PIG_ZOMBIES, "world"));
+        assertEquals(true, cfg.getBoolean(RootNode.ALWAYS_ANGRY_PIG_ZOMBIES, "worlds"));
+        //Not in the config -> disabled values
+        assertEquals(100, cfg.getInt(RootNode.GHASTS_DEFLECT_ARROWS, "test123"));
+        assertEquals("", cfg.getString(RootNode.MODE, "test123"));
+
+        //Setting a value invalidates the snapshot
+        cfg.set("pvp", RootNode.DONT_MOVE_WATER_SOURCE_BLOCKS, true);
+        assertTrue(cfg.getSnapshot() == null);
+        assertEquals(true, cfg.getBoolean(RootNode.DONT_MOVE_WATER_SOURCE_BLOCKS, "pvp"));
+    }
+
+
+    /**
+     * Only the nodes which have been modified should be reported as changed
+     */
+    @Test
+    public void testChangedNodes()
+    {
+        cfg.compile(RootNode.values());
+        ConfigSnapshot before = cfg.getSnapshot();
+        assertTrue(cfg.getSnapshot().changedNodes(before).isEmpty());
+
+        cfg.set("world", RootNode.WEAK_FOOD_CROPS, false);
+        cfg.compile(RootNode.values());
+        Set<ConfigNode> changed = cfg.getSnapshot().changedNodes(before);
+        assertEquals(1, changed.size());
+        assertTrue(changed.contains(RootNode.WEAK_FOOD_CROPS));
+
+        //Without a previous snapshot everything changed
+        assertEquals(RootNode.values().length, cfg.getSnapshot().changedNodes(null).size());
+    }
+
+
     /**
      * Test what happens if we query a value that doesn't exist in the config
      */
@@ -0,0 +1,118 @@
+package com.extrahardmode.features;
+
+
+import com.extrahardmode.service.config.customtypes.BlockRelationsList;
+import com.extrahardmode.service.config.customtypes.BlockType;
+import com.extrahardmode.service.config.customtypes.BlockTypeList;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Decisions of the hardened stone rules
+ */
+public class TestHardenedStoneRules
+{
+    private static final int STONE = 1, DIRT = 3, COBBLE = 4, IRON_ORE = 15, IRON_PICK = 257, DIAMOND_PICK = 278, WOOD_PICK = 270;
+
+
+    private HardenedStone.StoneRules createRules(boolean hardStone, boolean physics)
+    {
+        BlockTypeList tools = new BlockTypeList();
+        tools.add(new BlockType(IRON_PICK, (short) 32));
+        tools.add(new BlockType(DIAMOND_PICK, (short) 64));
+        tools.add(new BlockType(WOOD_PICK));
+        BlockTypeList hardBlocks = new BlockTypeList();
+        hardBlocks.add(new BlockType(STONE, (short) 0));
+        BlockTypeList oreBlocks = new BlockTypeList();
+        oreBlocks.add(new BlockType(IRON_ORE));
+        BlockRelationsList stoneBlocks = new BlockRelationsList();
+        stoneBlocks.add(new BlockType(STONE, (short) 0), new BlockType(COBBLE));
+        return new HardenedStone.StoneRules(hardStone, physics, true, tools, hardBlocks, oreBlocks, stoneBlocks);
+    }
+
+
+    @Test
+    public void relevantBlocks()
+    {
+        HardenedStone.StoneRules rules = createRules(true, true);
+        assertTrue(rules.isRelevant(STONE));
+        assertTrue(rules.isRelevant(IRON_ORE));
+        assertFalse(rules.isRelevant(DIRT));
+        assertFalse(rules.isRelevant(COBBLE));
+
+        assertTrue(rules.isHard(STONE, (byte) 0));
+        assertFalse("granite isn't hardened", rules.isHard(STONE, (byte) 1));
+        assertTrue(rules.isOre(IRON_ORE, (byte) 0));
+
+        rules = createRules(false, true);
+        assertFalse(rules.isRelevant(STONE));
+        assertTrue(rules.isRelevant(IRON_ORE));
+
+        rules = createRules(true, false);
+        assertTrue(rules.isRelevant(STONE));
+        assertFalse(rules.isRelevant(IRON_ORE));
+        assertFalse(rules.isOre(IRON_ORE, (byte) 0));
+    }
+
+
+    @Test
+    public void toolCosts()
+    {
+        HardenedStone.StoneRules rules = createRules(true, true);
+        assertEquals(32, rules.getToolCost(IRON_PICK));
+        assertEquals(64, rules.getToolCost(DIAMOND_PICK));
+        assertEquals(0, rules.getToolCost(WOOD_PICK));
+        assertEquals(HardenedStone.StoneRules.NOT_A_TOOL, rules.getToolCost(DIRT));
+        assertEquals(HardenedStone.StoneRules.NOT_A_TOOL, rules.getToolCost(0));
+    }
+
+
+    @Test
+    public void softened()
+    {
+        HardenedStone.StoneRules rules = createRules(true, true);
+        assertEquals(COBBLE, rules.getSoftened(STONE, (byte) 0).getBlockId());
+        assertNull(rules.getSoftened(STONE, (byte) 1));
+        assertNull(rules.getSoftened(DIRT, (byte) 0));
+    }
+
+
+    /**
+     * Blocks that are neither hardened nor ore take the fast path and are ignored
+     */
+    @Test
+    public void fastPath_ignoresOtherBlocks()
+    {
+        HardenedStone.StoneRules rules = createRules(true, true);
+        final int[] ids = {0, DIRT, 2, 12, 13, 17, 18, 24, 87, 88, 121, 4095};
+        for (int id : ids)
+            assertFalse("block " + id, rules.isRelevant(id));
+    }
+
+
+    /**
+     * Reports the cost of the check every BlockBreakEvent goes through, run it manually. Doesn't assert anything
+     * because timings depend on the machine.
+     */
+    @Ignore("benchmark")
+    @Test
+    public void benchmark_isRelevant()
+    {
+        HardenedStone.StoneRules rules = createRules(true, true);
+        final int[] ids = {0, DIRT, STONE, 2, 12, IRON_ORE, 13, 17, 18, COBBLE, 24, 87};
+        final int iterations = 10000000;
+        int relevant = 0;
+        //warm up the jit
+        for (int i = 0; i < iterations; i++)
+            if (rules.isRelevant(ids[i % ids.length]))
+                relevant++;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            if (rules.isRelevant(ids[i % ids.length]))
+                relevant++;
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("isRelevant: %.2f ns per call (%d relevant)", (double) elapsed / iterations, relevant));
+    }
+}
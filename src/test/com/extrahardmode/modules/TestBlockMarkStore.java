@@ -0,0 +1,58 @@
+package com.extrahardmode.modules;
+
+
+import com.extrahardmode.mocks.MockExtraHardMode;
+import com.extrahardmode.module.BlockMarkStore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestBlockMarkStore
+{
+    private final BlockMarkStore store = new BlockMarkStore(new MockExtraHardMode().get());
+
+
+    @Test
+    public void mark_unmark()
+    {
+        store.mark("world", 5, 64, -3);
+        assertTrue(store.isMarked("world", 5, 64, -3));
+        assertFalse(store.isMarked("world", 5, 65, -3));
+        assertFalse(store.isMarked("world", 21, 64, -3));
+        assertFalse(store.isMarked("world_nether", 5, 64, -3));
+
+        store.unmark("world", 5, 64, -3);
+        assertFalse(store.isMarked("world", 5, 64, -3));
+        assertEquals(0, store.getMarkCount());
+    }
+
+
+    @Test
+    public void manyInOneChunk()
+    {
+        for (int y = 255; y >= 0; y -= 3)
+            for (int x = 0; x < 16; x += 5)
+                store.mark("world", x - 16, y, 31);
+        store.mark("world", -16, 255, 31);
+        assertEquals(86 * 4, store.getMarkCount());
+
+        assertTrue(store.isMarked("world", -11, 252, 31));
+        assertFalse(store.isMarked("world", -11, 251, 31));
+        store.unmark("world", -11, 252, 31);
+        assertFalse(store.isMarked("world", -11, 252, 31));
+        assertTrue(store.isMarked("world", -16, 252, 31));
+    }
+
+
+    @Test
+    public void outOfRange()
+    {
+        store.mark("world", 0, 256, 0);
+        store.mark("world", 0, -1, 0);
+        assertFalse(store.isMarked("world", 0, 0, 0));
+        assertFalse(store.isMarked("world", 0, 256, 0));
+        assertEquals(0, store.getMarkCount());
+    }
+}
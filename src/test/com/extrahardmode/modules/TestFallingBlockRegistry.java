@@ -0,0 +1,173 @@
+package com.extrahardmode.modules;
+
+
+import com.extrahardmode.ExtraHardMode;
+import com.extrahardmode.config.RootConfig;
+import com.extrahardmode.config.RootNode;
+import com.extrahardmode.mocks.MockExtraHardMode;
+import com.extrahardmode.mocks.MockWorld;
+import com.extrahardmode.module.BlockModule;
+import com.extrahardmode.module.FallingBlockRegistry;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.FallingBlock;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Limits and expiry of the FallingBlocks spawned by the plugin
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ExtraHardMode.class, JavaPlugin.class})
+public class TestFallingBlockRegistry
+{
+    private final ExtraHardMode plugin = new MockExtraHardMode().get();
+
+    private final World world = new MockWorld("world").get();
+
+    private final BlockModule blockModule = mock(BlockModule.class);
+
+    private FallingBlockRegistry registry;
+
+    /**
+     * The task of the registry, runs once per tick
+     */
+    private Runnable tickTask;
+
+
+    @Before
+    public void setUp()
+    {
+        RootConfig cfg = new RootConfig(plugin);
+        cfg.set("world", RootNode.FALLING_BLOCKS_MAX_TOTAL, 3);
+        cfg.set("world", RootNode.FALLING_BLOCKS_MAX_PER_CHUNK, 2);
+        cfg.set("world", RootNode.FALLING_BLOCKS_MAX_AGE, 40);
+        when(plugin.getModuleForClass(RootConfig.class)).thenReturn(cfg);
+        when(plugin.getModuleForClass(BlockModule.class)).thenReturn(blockModule);
+
+        Server server = mock(Server.class);
+        BukkitScheduler scheduler = mock(BukkitScheduler.class);
+        PowerMockito.when(plugin.getServer()).thenReturn(server);
+        when(server.getScheduler()).thenReturn(scheduler);
+
+        when(world.spawnFallingBlock(any(Location.class), anyInt(), anyByte())).thenAnswer(new Answer<FallingBlock>()
+        {
+            @Override
+            public FallingBlock answer(InvocationOnMock invocation)
+            {
+                return mockFallingBlock();
+            }
+        });
+
+        registry = new FallingBlockRegistry(plugin);
+        registry.starting();
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).scheduleSyncRepeatingTask(eq(plugin), task.capture(), anyLong(), anyLong());
+        tickTask = task.getValue();
+    }
+
+
+    /**
+     * A FallingBlock which is valid until it gets removed
+     */
+    private static FallingBlock mockFallingBlock()
+    {
+        final FallingBlock fallingBlock = mock(FallingBlock.class);
+        final boolean[] valid = {true};
+        when(fallingBlock.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(fallingBlock.isValid()).thenAnswer(new Answer<Boolean>()
+        {
+            @Override
+            public Boolean answer(InvocationOnMock invocation)
+            {
+                return valid[0];
+            }
+        });
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            {
+                valid[0] = false;
+                return null;
+            }
+        }).when(fallingBlock).remove();
+        return fallingBlock;
+    }
+
+
+    private FallingBlock spawn(int x, int z)
+    {
+        return registry.spawn(new Location(world, x, 64, z), 12, (byte) 0);
+    }
+
+
+    private void tick(int ticks)
+    {
+        for (int i = 0; i < ticks; i++)
+            tickTask.run();
+    }
+
+
+    @Test
+    public void caps()
+    {
+        assertNotNull(spawn(0, 0));
+        assertNotNull(spawn(15, 15));
+        assertNull("chunk is full", spawn(8, 8));
+        assertNotNull(spawn(16, 0));
+        assertNull("total is full", spawn(32, 0));
+
+        assertEquals(3, registry.getLiveCount());
+        assertEquals(3, registry.getSpawnedCount());
+        assertEquals(2, registry.getCappedCount());
+    }
+
+
+    @Test
+    public void landedBlocksFreeTheirSlot()
+    {
+        FallingBlock first = spawn(0, 0);
+        spawn(1, 0);
+        assertNull(spawn(2, 0));
+
+        //landed
+        first.remove();
+        tick(1);
+        assertNotNull(spawn(2, 0));
+        assertEquals(2, registry.getLiveCount());
+    }
+
+
+    @Test
+    public void expiredBlocksAreSettled()
+    {
+        FallingBlock fallingBlock = spawn(0, 0);
+
+        tick(40);
+        verify(blockModule, never()).settle(any(FallingBlock.class));
+        assertEquals(1, registry.getLiveCount());
+
+        tick(20);
+        verify(blockModule).settle(fallingBlock);
+        assertFalse(fallingBlock.isValid());
+        assertEquals(0, registry.getLiveCount());
+        assertEquals(1, registry.getExpiredCount());
+    }
+}
@@ -0,0 +1,52 @@
+package com.extrahardmode.service;
+
+
+import com.extrahardmode.service.config.customtypes.BlockRelationsList;
+import com.extrahardmode.service.config.customtypes.BlockType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Diemex
+ */
+public class BlockRelationsListTest
+{
+    @Test
+    public void get_simple()
+    {
+        BlockRelationsList list = new BlockRelationsList();
+        list.add(new BlockType(1), new BlockType(4));
+
+        assertEquals(new BlockType(4), list.get(1, (byte) 0));
+        assertEquals(new BlockType(4), list.get(1, (byte) 6));
+        assertNull(list.get(4, (byte) 0));
+        assertNull(list.get(300, (byte) 0));
+    }
+
+
+    @Test
+    public void get_metaBeforeWildcard()
+    {
+        BlockRelationsList list = new BlockRelationsList();
+        list.add(new BlockType(98), new BlockType(4));
+        list.add(new BlockType(98, (short) 1), new BlockType(48));
+
+        assertEquals(new BlockType(48), list.get(98, (byte) 1));
+        assertEquals(new BlockType(4), list.get(98, (byte) 0));
+    }
+
+
+    @Test
+    public void get_afterAdd()
+    {
+        BlockRelationsList list = new BlockRelationsList();
+        list.add(new BlockType(1, (short) 0), new BlockType(4));
+        assertNull(list.get(24, (byte) 0));
+
+        list.addFromConfig("SANDSTONE-SAND");
+        assertEquals(new BlockType(12), list.get(24, (byte) 2));
+        assertEquals(new BlockType(4), list.get(1, (byte) 0));
+        assertNull(list.get(1, (byte) 1));
+    }
+}
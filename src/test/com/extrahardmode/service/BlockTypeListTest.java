@@ -0,0 +1,87 @@
+package com.extrahardmode.service;
+
+
+import com.extrahardmode.service.config.customtypes.BlockType;
+import com.extrahardmode.service.config.customtypes.BlockTypeList;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Diemex
+ */
+public class BlockTypeListTest
+{
+    @Test
+    public void contains_noMeta()
+    {
+        BlockTypeList list = new BlockTypeList();
+        list.add(new BlockType(1));
+
+        for (byte data = 0; data < 16; data++)
+            assertTrue(list.contains(1, data));
+        assertTrue(list.contains(1));
+        assertFalse(list.contains(2, (byte) 0));
+        assertFalse(list.contains(0));
+    }
+
+
+    @Test
+    public void contains_meta()
+    {
+        BlockTypeList list = new BlockTypeList();
+        list.add(new BlockType(17, (short) 1, (short) 15));
+        list.add(new BlockType(18, (short) 0));
+
+        assertTrue(list.contains(17, (byte) 1));
+        assertTrue(list.contains(17, (byte) 15));
+        assertFalse(list.contains(17, (byte) 0));
+        assertTrue(list.contains(18, (byte) 0));
+        assertFalse(list.contains(18, (byte) 1));
+        assertFalse(list.contains(16));
+        assertFalse(list.contains(19));
+    }
+
+
+    @Test
+    public void contains_afterAdd()
+    {
+        BlockTypeList list = new BlockTypeList();
+        list.add(new BlockType(5, (short) 2));
+        assertFalse(list.contains(5, (byte) 3));
+
+        list.add(new BlockType(5, (short) 3));
+        assertTrue(list.contains(5, (byte) 2));
+        assertTrue(list.contains(5, (byte) 3));
+
+        //no meta widens to all meta
+        list.add(new BlockType(5));
+        assertTrue(list.contains(5, (byte) 7));
+    }
+
+
+    @Test
+    public void contains_outOfIndexRange()
+    {
+        BlockTypeList list = new BlockTypeList();
+        list.add(new BlockType(5000, (short) 3));
+
+        assertTrue(list.contains(5000));
+        assertTrue(list.contains(5000, (byte) 3));
+        assertFalse(list.contains(5000, (byte) 4));
+        assertFalse(list.contains(1, (byte) 0));
+    }
+
+
+    @Test
+    public void contains_metaOutOfDataRange()
+    {
+        BlockTypeList list = new BlockTypeList();
+        list.add(new BlockType(35, (short) 20));
+
+        assertTrue(list.contains(35));
+        for (byte data = 0; data < 16; data++)
+            assertFalse(list.contains(35, data));
+        assertFalse(list.contains(34));
+    }
+}
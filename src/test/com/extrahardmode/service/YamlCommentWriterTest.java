@@ -0,0 +1,68 @@
+package com.extrahardmode.service;
+
+
+import com.extrahardmode.service.config.YamlCommentWriter;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Diemex
+ */
+public class YamlCommentWriterTest
+{
+    private static final String NL = String.format("%n");
+
+
+    private String addComments(String yml, Map<String, String[]> comments) throws IOException
+    {
+        StringWriter out = new StringWriter();
+        YamlCommentWriter.write(new BufferedReader(new StringReader(yml)), out, new YamlCommentWriter.CommentTrie(comments));
+        return out.toString();
+    }
+
+
+    @Test
+    public void nestedComments() throws IOException
+    {
+        Map<String, String[]> comments = new HashMap<String, String[]>();
+        comments.put("Root.Torches", new String[]{"torch comment"});
+        comments.put("Root.Torches.Enable", new String[]{"line 1", "line 2"});
+
+        String yml = "Root:\n  Torches:\n    Enable: true\n  Water:\n    Enable: false\n";
+        String expected = "Root:" + NL +
+                "  # torch comment" + NL +
+                "  Torches:" + NL +
+                "    # line 1" + NL +
+                "    # line 2" + NL +
+                "    Enable: true" + NL +
+                "  Water:" + NL +
+                "    Enable: false" + NL;
+        assertEquals(expected, addComments(yml, comments));
+    }
+
+
+    @Test
+    public void sameNameDifferentParent() throws IOException
+    {
+        Map<String, String[]> comments = new HashMap<String, String[]>();
+        comments.put("A.Enable", new String[]{"a"});
+
+        String yml = "B:\n  Enable: true\nA:\n  Enable: true\n  List:\n  - Enable: x\n";
+        String expected = "B:" + NL +
+                "  Enable: true" + NL +
+                "A:" + NL +
+                "  # a" + NL +
+                "  Enable: true" + NL +
+                "  List:" + NL +
+                "  - Enable: x" + NL;
+        assertEquals(expected, addComments(yml, comments));
+    }
+}